@@ -0,0 +1,29 @@
+-- Lookup indexes for data transfers and passports (PostgreSQL).
+--
+-- New databases get these indexes from the @Index definitions on the entities when Hibernate updates the schema.
+-- On an existing database with many rows, run this script with psql BEFORE deploying the new version, so the
+-- indexes are built without blocking writes and Hibernate finds them already in place:
+--
+--   psql -h localhost -U postgres -d springbootdb -f docs/sql/001_lookup_indexes.sql
+--
+-- CREATE INDEX CONCURRENTLY cannot run inside a transaction block, so do not wrap this script in BEGIN/COMMIT.
+-- The script is idempotent. A failed concurrent build leaves an INVALID index behind that IF NOT EXISTS would skip;
+-- drop it with DROP INDEX CONCURRENTLY <name> before re-running.
+
+-- findByReferenceId and findByReferenceIdAndTransferTimeBetween
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_data_transfers_reference_id_transfer_time
+    ON data_transfers (reference_id, transfer_time);
+
+-- findByTransferTimeBetween
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_data_transfers_transfer_time
+    ON data_transfers (transfer_time);
+
+-- findBySerialNumber. The unique index fails to build if duplicate serial numbers already exist; list them with
+--   SELECT serial_number, count(*) FROM digital_product_passport
+--   WHERE serial_number IS NOT NULL GROUP BY serial_number HAVING count(*) > 1;
+-- and resolve them before re-running the script.
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS ux_digital_product_passport_serial_number
+    ON digital_product_passport (serial_number);
+
+ANALYZE data_transfers;
+ANALYZE digital_product_passport;
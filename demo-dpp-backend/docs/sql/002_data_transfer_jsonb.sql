@@ -0,0 +1,35 @@
+-- Store data transfer payloads as jsonb and index them for containment queries (PostgreSQL).
+--
+-- New databases get a jsonb column from the entity mapping, and the application creates the GIN index on startup.
+-- On an existing database, run this script with psql BEFORE deploying the new version:
+--
+--   psql -h localhost -U postgres -d springbootdb -f docs/sql/002_data_transfer_jsonb.sql
+--
+-- Converting the column rewrites the table and holds an exclusive lock on data_transfers while it runs, so schedule
+-- it in a maintenance window on large tables. The index is then built without blocking writes.
+-- The script is idempotent.
+
+-- Rows that are not valid JSON are kept as JSON strings instead of failing the conversion
+CREATE OR REPLACE FUNCTION pg_temp.to_jsonb_lenient(value text) RETURNS jsonb AS $$
+BEGIN
+    RETURN value::jsonb;
+EXCEPTION WHEN invalid_text_representation THEN
+    RETURN to_jsonb(value);
+END;
+$$ LANGUAGE plpgsql IMMUTABLE;
+
+DO $$
+BEGIN
+    IF (SELECT data_type FROM information_schema.columns
+        WHERE table_name = 'data_transfers' AND column_name = 'json_data') <> 'jsonb' THEN
+        ALTER TABLE data_transfers
+            ALTER COLUMN json_data TYPE jsonb USING pg_temp.to_jsonb_lenient(json_data);
+    END IF;
+END $$;
+
+-- jsonb_path_ops supports the @> containment operator used by the json.<path> filters and is smaller than the
+-- default jsonb_ops operator class
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_data_transfers_json_data
+    ON data_transfers USING gin (json_data jsonb_path_ops);
+
+ANALYZE data_transfers;
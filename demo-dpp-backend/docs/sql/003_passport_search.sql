@@ -0,0 +1,47 @@
+-- Search indexes for /api/dpp/search (PostgreSQL).
+--
+-- The application creates these indexes on startup. On an existing database with many passports, run this script
+-- with psql BEFORE deploying the new version, so the indexes are built without blocking writes:
+--
+--   psql -h localhost -U postgres -d springbootdb -f docs/sql/003_passport_search.sql
+--
+-- CREATE INDEX CONCURRENTLY cannot run inside a transaction block, so do not wrap this script in BEGIN/COMMIT.
+-- The script is idempotent. A failed concurrent build leaves an INVALID index behind that IF NOT EXISTS would skip;
+-- drop it with DROP INDEX CONCURRENTLY <name> before re-running.
+--
+-- The indexed expressions must stay identical to PASSPORT_DOCUMENT, REPAIR_DOCUMENT and textVector in
+-- PassportSearchService, otherwise the planner cannot use them.
+
+-- Prefix search: full-text indexes with the simple configuration (no stemming or stop words, so serial and model
+-- numbers are indexed as written). Punctuation is replaced by spaces first, so "SN-0012345" is indexed as "sn" and
+-- "0012345" rather than "sn" and the signed number "-0012345".
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_digital_product_passport_search
+    ON digital_product_passport USING gin (to_tsvector('simple', regexp_replace((coalesce(product_name, '') || ' '
+        || coalesce(manufacturer, '') || ' ' || coalesce(serial_number, '') || ' ' || coalesce(model_number, '')
+        || ' ' || coalesce(product_type, '')), '[^[:alnum:]]+', ' ', 'g')));
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_repair_entry_search
+    ON repair_entry USING gin (to_tsvector('simple', regexp_replace((coalesce(description, '') || ' '
+        || coalesce(repair_type, '') || ' ' || coalesce(technician, '')), '[^[:alnum:]]+', ' ', 'g')));
+
+-- Fuzzy search: trigram indexes. Without pg_trgm, fuzzy=true falls back to prefix search.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_digital_product_passport_search_trgm
+    ON digital_product_passport USING gin ((coalesce(product_name, '') || ' '
+        || coalesce(manufacturer, '') || ' ' || coalesce(serial_number, '') || ' ' || coalesce(model_number, '')
+        || ' ' || coalesce(product_type, '')) gin_trgm_ops);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_repair_entry_search_trgm
+    ON repair_entry USING gin ((coalesce(description, '') || ' '
+        || coalesce(repair_type, '') || ' ' || coalesce(technician, '')) gin_trgm_ops);
+
+-- Search filters and facets
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_digital_product_passport_product_type
+    ON digital_product_passport (product_type);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_digital_product_passport_manufacturer
+    ON digital_product_passport (manufacturer);
+
+ANALYZE digital_product_passport;
+ANALYZE repair_entry;
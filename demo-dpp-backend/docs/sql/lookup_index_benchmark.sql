@@ -0,0 +1,62 @@
+-- Lookup latency benchmark for data_transfers at 10M rows (PostgreSQL, e.g. the db service from docker-compose.yaml).
+--
+--   docker compose up -d db
+--   psql -h localhost -U postgres -d springbootdb -f docs/sql/lookup_index_benchmark.sql
+--
+-- The script works on a scratch copy of the table (bench_data_transfers) and drops it at the end, so it does not
+-- touch application data. It runs each repository lookup with EXPLAIN ANALYZE twice: once without indexes
+-- (sequential scan) and once after creating the indexes from 001_lookup_indexes.sql.
+-- Loading 10M rows takes a few minutes and about 2 GB of disk.
+
+\timing on
+
+DROP TABLE IF EXISTS bench_data_transfers;
+CREATE TABLE bench_data_transfers (LIKE data_transfers INCLUDING DEFAULTS);
+
+-- 10M transfers spread over 100k reference IDs and one year of transfer times
+INSERT INTO bench_data_transfers (id, transfer_id, transfer_time, reference_id, json_data)
+SELECT g,
+       md5(g::text),
+       timestamp '2024-01-01' + (g % 31536000) * interval '1 second',
+       'ref-' || (g % 100000),
+       '{"id":"ref-' || (g % 100000) || '","value":' || g || '}'
+FROM generate_series(1, 10000000) AS g;
+
+ANALYZE bench_data_transfers;
+
+\echo '=== Without indexes ==='
+
+-- findByReferenceId
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM bench_data_transfers WHERE reference_id = 'ref-4242';
+
+-- findByTransferTimeBetween (one hour)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM bench_data_transfers
+WHERE transfer_time BETWEEN timestamp '2024-06-01 10:00' AND timestamp '2024-06-01 11:00';
+
+-- findByReferenceIdAndTransferTimeBetween (one month)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM bench_data_transfers
+WHERE reference_id = 'ref-4242'
+  AND transfer_time BETWEEN timestamp '2024-06-01' AND timestamp '2024-07-01';
+
+CREATE INDEX bench_idx_reference_id_transfer_time ON bench_data_transfers (reference_id, transfer_time);
+CREATE INDEX bench_idx_transfer_time ON bench_data_transfers (transfer_time);
+ANALYZE bench_data_transfers;
+
+\echo '=== With indexes ==='
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM bench_data_transfers WHERE reference_id = 'ref-4242';
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM bench_data_transfers
+WHERE transfer_time BETWEEN timestamp '2024-06-01 10:00' AND timestamp '2024-06-01 11:00';
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM bench_data_transfers
+WHERE reference_id = 'ref-4242'
+  AND transfer_time BETWEEN timestamp '2024-06-01' AND timestamp '2024-07-01';
+
+DROP TABLE bench_data_transfers;
@@ -0,0 +1,96 @@
+package utcluj.aut.demosimpleapp.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import utcluj.aut.demosimpleapp.util.BlobStore;
+import utcluj.aut.demosimpleapp.util.LocalBlobStore;
+import utcluj.aut.demosimpleapp.util.S3BlobStore;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Paths;
+
+@Configuration
+public class BlobStoreConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobStoreConfig.class);
+
+    @Value("${uploads.store:local}")
+    private String store;
+
+    @Value("${uploads.dir:uploads}")
+    private String uploadsDir;
+
+    @Value("${uploads.s3.endpoint:}")
+    private String s3Endpoint;
+
+    @Value("${uploads.s3.region:us-east-1}")
+    private String s3Region;
+
+    @Value("${uploads.s3.bucket:}")
+    private String s3Bucket;
+
+    @Value("${uploads.s3.prefix:}")
+    private String s3Prefix;
+
+    @Value("${uploads.s3.access-key:}")
+    private String s3AccessKey;
+
+    @Value("${uploads.s3.secret-key:}")
+    private String s3SecretKey;
+
+    @Value("${uploads.s3.path-style:true}")
+    private boolean s3PathStyle;
+
+    @Value("${uploads.s3.max-connections:50}")
+    private int s3MaxConnections;
+
+    /**
+     * Storage backend for uploaded files: the local uploads directory, or a bucket in an S3-compatible
+     * object store when uploads.store=s3
+     */
+    @Bean
+    public BlobStore blobStore() throws IOException {
+        switch (store) {
+            case "local" -> {
+                LocalBlobStore localStore = new LocalBlobStore(Paths.get(uploadsDir));
+                logger.info("Storing uploads in {}", localStore.getRoot());
+                return localStore;
+            }
+            case "s3" -> {
+                if (s3Bucket.isEmpty()) {
+                    throw new IllegalStateException("uploads.s3.bucket is required when uploads.store=s3");
+                }
+                logger.info("Storing uploads in bucket {} at {}", s3Bucket,
+                        s3Endpoint.isEmpty() ? "AWS S3" : s3Endpoint);
+                return new S3BlobStore(s3Client(), s3Bucket, s3Prefix);
+            }
+            default -> throw new IllegalStateException("Unknown uploads.store: " + store + " (local or s3)");
+        }
+    }
+
+    private S3Client s3Client() {
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(s3Region))
+                .forcePathStyle(s3PathStyle)
+                .httpClientBuilder(ApacheHttpClient.builder().maxConnections(s3MaxConnections));
+        if (!s3Endpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(s3Endpoint));
+        }
+        // Without explicit keys the default AWS credential chain (environment, profile, instance role) is used
+        if (!s3AccessKey.isEmpty()) {
+            builder.credentialsProvider(StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(s3AccessKey, s3SecretKey)));
+        }
+        return builder.build();
+    }
+}
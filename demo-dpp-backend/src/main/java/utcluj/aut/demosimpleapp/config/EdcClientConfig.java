@@ -0,0 +1,76 @@
+package utcluj.aut.demosimpleapp.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * HTTP client for the EDC connector management API. Connections are pooled and kept alive between calls, so bulk
+ * transfers do not open a new connection per request; the per-host limit caps how many calls one connector gets
+ * at a time. Retries are done by {@link utcluj.aut.demosimpleapp.service.EdcTransferService}, not by the client.
+ */
+@Configuration
+public class EdcClientConfig {
+
+    @Value("${edc.http.max-connections:100}")
+    private int maxConnections;
+
+    @Value("${edc.http.max-connections-per-host:20}")
+    private int maxConnectionsPerHost;
+
+    @Value("${edc.http.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${edc.http.response-timeout-ms:30000}")
+    private long responseTimeoutMs;
+
+    // How long a call waits for a free pooled connection before failing
+    @Value("${edc.http.pool-timeout-ms:10000}")
+    private long poolTimeoutMs;
+
+    @Value("${edc.http.idle-timeout-ms:30000}")
+    private long idleTimeoutMs;
+
+    @Bean
+    public PoolingHttpClientConnectionManager edcConnectionManager(MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerHost)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                        // Check connections that sat idle in the pool before reusing them
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        // Pool usage (httpcomponents.httpclient.pool.*) at /actuator/metrics
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "edc").bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean
+    public RestTemplate edcRestTemplate(PoolingHttpClientConnectionManager edcConnectionManager) {
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(edcConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                        .build())
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleTimeoutMs))
+                .disableAutomaticRetries()
+                .build();
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+}
@@ -0,0 +1,106 @@
+package utcluj.aut.demosimpleapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Transfer profiles, bound from edc.profiles.&lt;name&gt;.*. Each profile names the connector to call,
+ * the contract agreement to transfer under and the sink the provider pushes the data to.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "edc")
+public class EdcTransferProfileProperties {
+
+    /**
+     * Profile used when a transfer names no profile and no profile's id-pattern matches the ID
+     */
+    private String defaultProfile = "default";
+
+    private Map<String, Profile> profiles = new LinkedHashMap<>();
+
+    public String getDefaultProfile() {
+        return defaultProfile;
+    }
+
+    public void setDefaultProfile(String defaultProfile) {
+        this.defaultProfile = defaultProfile;
+    }
+
+    public Map<String, Profile> getProfiles() {
+        return profiles;
+    }
+
+    public void setProfiles(Map<String, Profile> profiles) {
+        this.profiles = profiles;
+    }
+
+    public static class Profile {
+
+        // Management API base URL of the consumer connector, e.g. http://localhost:22002
+        private String connectorUrl;
+
+        private String apiKey;
+
+        private String contractAgreementId;
+
+        // Where the provider pushes the transferred data
+        private String dataSinkUrl;
+
+        // Path on the provider's data source the ID is requested from
+        private String pathSegments = "detail";
+
+        // Optional regular expression; IDs matching it are routed to this profile
+        private String idPattern;
+
+        public String getConnectorUrl() {
+            return connectorUrl;
+        }
+
+        public void setConnectorUrl(String connectorUrl) {
+            this.connectorUrl = connectorUrl;
+        }
+
+        public String getApiKey() {
+            return apiKey;
+        }
+
+        public void setApiKey(String apiKey) {
+            this.apiKey = apiKey;
+        }
+
+        public String getContractAgreementId() {
+            return contractAgreementId;
+        }
+
+        public void setContractAgreementId(String contractAgreementId) {
+            this.contractAgreementId = contractAgreementId;
+        }
+
+        public String getDataSinkUrl() {
+            return dataSinkUrl;
+        }
+
+        public void setDataSinkUrl(String dataSinkUrl) {
+            this.dataSinkUrl = dataSinkUrl;
+        }
+
+        public String getPathSegments() {
+            return pathSegments;
+        }
+
+        public void setPathSegments(String pathSegments) {
+            this.pathSegments = pathSegments;
+        }
+
+        public String getIdPattern() {
+            return idPattern;
+        }
+
+        public void setIdPattern(String idPattern) {
+            this.idPattern = idPattern;
+        }
+    }
+}
@@ -5,39 +5,45 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import utcluj.aut.demosimpleapp.util.EncryptionUtil;
+import utcluj.aut.demosimpleapp.util.FileKeyProvider;
+import utcluj.aut.demosimpleapp.util.KeyProvider;
+import utcluj.aut.demosimpleapp.util.KeyringKeyProvider;
 
-import javax.crypto.SecretKey;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 
 @Configuration
 public class EncryptionConfig {
 
     private static final Logger logger = LoggerFactory.getLogger(EncryptionConfig.class);
-    
+
     @Value("${encryption.key.file:encryption.key}")
     private String keyFilePath;
-    
+
+    @Value("${encryption.keyring.dir:}")
+    private String keyringDir;
+
+    @Value("${encryption.keyring.active-key-id:" + KeyProvider.DEFAULT_KEY_ID + "}")
+    private String activeKeyId;
+
     /**
-     * Initialize the encryption key on application startup
+     * Initialize the encryption keys on application startup. A keyring directory, when configured,
+     * takes precedence over the single key file.
      */
     @Bean
-    public SecretKey initializeEncryption() {
+    public KeyProvider keyProvider() {
         try {
-            // Create directory for the key file if it doesn't exist
-            Path keyFile = Paths.get(keyFilePath);
-            Path parent = keyFile.getParent();
-            if (parent != null && !Files.exists(parent)) {
-                Files.createDirectories(parent);
+            if (!keyringDir.isEmpty()) {
+                logger.info("Initializing encryption keyring from: {} (active key: {})", keyringDir, activeKeyId);
+                KeyringKeyProvider keyring = new KeyringKeyProvider(Paths.get(keyringDir), activeKeyId);
+                logger.info("Encryption keyring initialized with keys: {}", keyring.getKeyIds());
+                return keyring;
             }
-            
+
             logger.info("Initializing encryption key from: {}", keyFilePath);
-            SecretKey secretKey = EncryptionUtil.initializeEncryptionKey(keyFilePath);
+            KeyProvider keyProvider = new FileKeyProvider(Paths.get(keyFilePath));
             logger.info("Encryption key initialized successfully");
-            
-            return secretKey;
+
+            return keyProvider;
         } catch (Exception e) {
             logger.error("Failed to initialize encryption key", e);
             throw new RuntimeException("Failed to initialize encryption key", e);
@@ -0,0 +1,55 @@
+package utcluj.aut.demosimpleapp.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.Map;
+
+/**
+ * Moves each ID sequence past the highest existing ID of its table. These tables used identity IDs before
+ * they switched to sequences, and the sequence Hibernate creates on an existing database starts at 1.
+ */
+@Component
+public class IdSequenceInitializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdSequenceInitializer.class);
+
+    // Table -> sequence
+    private static final Map<String, String> SEQUENCES = Map.of(
+            "data_transfers", "data_transfers_seq",
+            "digital_product_passport", "digital_product_passport_seq",
+            "repair_entry", "repair_entry_seq");
+
+    @Autowired
+    private DataSource dataSource;
+
+    // Injected only so this runs after the schema update has created the sequences
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void init() throws Exception {
+        String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        if (!"PostgreSQL".equals(product)) {
+            return;
+        }
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        SEQUENCES.forEach((table, sequence) -> {
+            Long maxId = jdbcTemplate.queryForObject("select max(id) from " + table, Long.class);
+            Long lastValue = jdbcTemplate.queryForObject("select last_value from " + sequence, Long.class);
+            if (maxId != null && lastValue != null && lastValue < maxId) {
+                jdbcTemplate.queryForObject("select setval('" + sequence + "', ?)", Long.class, maxId);
+                logger.info("Advanced {} from {} to {}", sequence, lastValue, maxId);
+            }
+        });
+    }
+}
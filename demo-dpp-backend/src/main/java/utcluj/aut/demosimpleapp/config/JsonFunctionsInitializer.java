@@ -0,0 +1,55 @@
+package utcluj.aut.demosimpleapp.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Component;
+import utcluj.aut.demosimpleapp.repository.JsonFunctionContributor;
+import utcluj.aut.demosimpleapp.util.JsonContainment;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+
+/**
+ * Prepares the database for JSON queries on data transfers once Hibernate has updated the schema:
+ * on PostgreSQL it creates the GIN index on {@code json_data}, on H2 it registers the {@code JSON_CONTAINS}
+ * function used by {@link JsonFunctionContributor}.
+ */
+@Component
+public class JsonFunctionsInitializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(JsonFunctionsInitializer.class);
+
+    @Autowired
+    private DataSource dataSource;
+
+    // Injected only so this runs after the schema update
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void init() throws Exception {
+        String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        if ("PostgreSQL".equals(product)) {
+            String columnType = jdbcTemplate.queryForObject(
+                    "select data_type from information_schema.columns "
+                            + "where table_name = 'data_transfers' and column_name = 'json_data'", String.class);
+            if (!"jsonb".equals(columnType)) {
+                logger.warn("data_transfers.json_data is {}, not jsonb; JSON filters will fail until "
+                        + "docs/sql/002_data_transfer_jsonb.sql has been applied", columnType);
+                return;
+            }
+            jdbcTemplate.execute("create index if not exists idx_data_transfers_json_data "
+                    + "on data_transfers using gin (json_data jsonb_path_ops)");
+        } else if ("H2".equals(product)) {
+            jdbcTemplate.execute("create alias if not exists JSON_CONTAINS for '"
+                    + JsonContainment.class.getName() + ".contains'");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package utcluj.aut.demosimpleapp.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Component;
+import utcluj.aut.demosimpleapp.service.PassportSearchService;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+
+/**
+ * Creates the search indexes used by {@link PassportSearchService} on PostgreSQL once Hibernate has updated
+ * the schema: full-text GIN indexes for prefix search and, if the pg_trgm extension can be installed, trigram GIN
+ * indexes for fuzzy search. Large existing tables should get them from docs/sql/003_passport_search.sql first.
+ */
+@Component
+public class SearchIndexInitializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchIndexInitializer.class);
+
+    @Autowired
+    private DataSource dataSource;
+
+    // Injected only so this runs after the schema update
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void init() throws Exception {
+        String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        if (!"PostgreSQL".equals(product)) {
+            return;
+        }
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create index if not exists ix_digital_product_passport_search "
+                + "on digital_product_passport using gin ("
+                + PassportSearchService.textVector(PassportSearchService.PASSPORT_DOCUMENT) + ")");
+        jdbcTemplate.execute("create index if not exists ix_repair_entry_search "
+                + "on repair_entry using gin ("
+                + PassportSearchService.textVector(PassportSearchService.REPAIR_DOCUMENT) + ")");
+
+        try {
+            jdbcTemplate.execute("create extension if not exists pg_trgm");
+        } catch (DataAccessException e) {
+            logger.warn("Could not install pg_trgm, fuzzy search falls back to prefix matching: {}", e.getMessage());
+            return;
+        }
+        jdbcTemplate.execute("create index if not exists ix_digital_product_passport_search_trgm "
+                + "on digital_product_passport using gin (" + PassportSearchService.PASSPORT_DOCUMENT
+                + " gin_trgm_ops)");
+        jdbcTemplate.execute("create index if not exists ix_repair_entry_search_trgm "
+                + "on repair_entry using gin (" + PassportSearchService.REPAIR_DOCUMENT + " gin_trgm_ops)");
+    }
+}
@@ -0,0 +1,179 @@
+package utcluj.aut.demosimpleapp.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import utcluj.aut.demosimpleapp.model.DigitalProductPassport;
+import utcluj.aut.demosimpleapp.model.StoredFile;
+import utcluj.aut.demosimpleapp.repository.DigitalProductPassportRepository;
+import utcluj.aut.demosimpleapp.repository.StoredFileRepository;
+import utcluj.aut.demosimpleapp.service.EncryptionService;
+import utcluj.aut.demosimpleapp.util.BlobStore;
+import utcluj.aut.demosimpleapp.util.ChunkedEncryptionFormat;
+import utcluj.aut.demosimpleapp.util.LocalBlobStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Builds stored_files records for uploads made before file locations were persisted, when they were only kept
+ * in memory. A passport with a CSV file name but no record is matched to an unindexed file at the top level of
+ * the uploads directory by the content hash recorded on the passport, and only when it is the one passport with
+ * that hash and exactly one file has that content and encryption, unchanged since it was hashed. Passports
+ * without a recorded hash cannot be told apart from stale copies of earlier uploads; they are logged and left
+ * alone, as is anything else ambiguous.
+ */
+@Component
+public class StoredFileIndexInitializer implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoredFileIndexInitializer.class);
+
+    @Autowired
+    private StoredFileRepository storedFileRepository;
+
+    @Autowired
+    private DigitalProductPassportRepository passportRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Value("${uploads.reconcile-on-startup:true}")
+    private boolean enabled;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        List<Long> unindexedPassports = storedFileRepository.findPassportIdsWithoutStoredFile();
+        if (unindexedPassports.isEmpty()) {
+            return;
+        }
+
+        if (!(blobStore instanceof LocalBlobStore localStore)) {
+            logger.warn("{} passports have no stored file record; they can only be indexed from a local uploads"
+                    + " directory (uploads.store=local)", unindexedPassports.size());
+            return;
+        }
+        // Older uploads were stored flat in the uploads directory, content-addressed ones are in subdirectories
+        Path uploadsDir = localStore.getRoot();
+        Set<String> indexedKeys = storedFileRepository.findAllStorageKeys();
+        List<Path> unindexedFiles;
+        try (Stream<Path> files = Files.list(uploadsDir)) {
+            unindexedFiles = new ArrayList<>(files
+                    .filter(Files::isRegularFile)
+                    .filter(file -> !indexedKeys.contains(file.getFileName().toString()))
+                    .toList());
+        }
+
+        List<DigitalProductPassport> withoutHash = new ArrayList<>();
+        Map<String, List<DigitalProductPassport>> passportsByHash = new HashMap<>();
+        for (Long passportId : unindexedPassports) {
+            DigitalProductPassport passport = passportRepository.findById(passportId).orElse(null);
+            if (passport == null) {
+                continue;
+            }
+            if (passport.getCsvSha256() == null) {
+                withoutHash.add(passport);
+            } else {
+                passportsByHash.computeIfAbsent(passport.getCsvSha256(), hash -> new ArrayList<>()).add(passport);
+            }
+        }
+
+        Map<String, List<HashedFile>> filesByHash = passportsByHash.isEmpty() ? Map.of() : hashFiles(unindexedFiles);
+        List<DigitalProductPassport> unmatched = new ArrayList<>();
+        int indexed = 0;
+        for (Map.Entry<String, List<DigitalProductPassport>> entry : passportsByHash.entrySet()) {
+            if (entry.getValue().size() != 1) {
+                unmatched.addAll(entry.getValue());
+                continue;
+            }
+            DigitalProductPassport passport = entry.getValue().get(0);
+            List<HashedFile> candidates = filesByHash.getOrDefault(entry.getKey(), List.of()).stream()
+                    .filter(candidate -> candidate.encrypted() == passport.isEncrypted())
+                    .toList();
+            if (candidates.size() != 1 || Files.size(candidates.get(0).file()) != candidates.get(0).size()) {
+                unmatched.add(passport);
+                continue;
+            }
+            index(passport, candidates.get(0).file(), entry.getKey());
+            indexed++;
+        }
+
+        logger.info("Indexed {} existing uploads", indexed);
+        if (!withoutHash.isEmpty()) {
+            logger.warn("Passports {} have no recorded content hash, so their uploaded file cannot be told apart"
+                            + " from other files in {}; index them manually",
+                    withoutHash.stream().map(DigitalProductPassport::getId).toList(), uploadsDir.toAbsolutePath());
+        }
+        if (!unmatched.isEmpty()) {
+            logger.warn("Could not determine the uploaded file of passports {}: no single file in {} matches their"
+                            + " content hash", unmatched.stream().map(DigitalProductPassport::getId).toList(),
+                    uploadsDir.toAbsolutePath());
+        }
+    }
+
+    private void index(DigitalProductPassport passport, Path file, String sha256) throws IOException {
+        StoredFile storedFile = new StoredFile();
+        storedFile.setPassportId(passport.getId());
+        storedFile.setStorageKey(file.getFileName().toString());
+        storedFile.setOriginalFilename(passport.getCsvFileName());
+        storedFile.setStoredSize(Files.size(file));
+        storedFile.setSha256(sha256);
+        storedFile.setEncrypted(passport.isEncrypted());
+        storedFile.setCreatedAt(LocalDateTime.ofInstant(
+                Files.getLastModifiedTime(file).toInstant(), ZoneId.systemDefault()));
+        storedFileRepository.save(storedFile);
+        logger.info("Indexed {} as the CSV file of passport {}", file.getFileName(), passport.getId());
+    }
+
+    private record HashedFile(Path file, boolean encrypted, long size) {
+    }
+
+    /**
+     * SHA-256 of the plaintext of each file, as recorded on passports at upload
+     */
+    private Map<String, List<HashedFile>> hashFiles(List<Path> files) {
+        Map<String, List<HashedFile>> filesByHash = new HashMap<>();
+        for (Path file : files) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                long size = Files.size(file);
+                boolean encrypted = ChunkedEncryptionFormat.isChunkedFormat(file);
+                try (InputStream in = encrypted
+                        ? encryptionService.decryptingStream(file, 0)
+                        : Files.newInputStream(file);
+                     OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+                    in.transferTo(out);
+                }
+                filesByHash.computeIfAbsent(HexFormat.of().formatHex(digest.digest()), hash -> new ArrayList<>())
+                        .add(new HashedFile(file, encrypted, size));
+            } catch (IOException | RuntimeException | NoSuchAlgorithmException e) {
+                logger.warn("Could not read {} while indexing uploads: {}", file.getFileName(), e.getMessage());
+            }
+        }
+        return filesByHash;
+    }
+}
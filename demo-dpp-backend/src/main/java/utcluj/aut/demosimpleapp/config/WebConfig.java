@@ -13,7 +13,7 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedOrigins("http://localhost:3000")
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "PATCH")
                 .allowedHeaders("*")
-                .exposedHeaders("Content-Disposition")
+                .exposedHeaders("Content-Disposition", "Content-Range", "Accept-Ranges", "ETag", "Last-Modified", "X-Total-Count", "X-Next-Cursor")
                 .maxAge(3600);
 
         // Allow CORS for Swagger UI
@@ -1,25 +1,56 @@
 package utcluj.aut.demosimpleapp.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import utcluj.aut.demosimpleapp.model.DataTransfer;
+import utcluj.aut.demosimpleapp.repository.DataTransferSpecifications;
+import utcluj.aut.demosimpleapp.service.DataTransferExportService;
+import utcluj.aut.demosimpleapp.service.DataTransferIngestionService;
 import utcluj.aut.demosimpleapp.service.DataTransferReceiverService;
+import utcluj.aut.demosimpleapp.service.DataTransferSubscriptionService;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/data-transfers")
 public class DataTransferReceiverController {
 
+    private static final Set<String> SORTABLE_FIELDS = Set.of("id", "transferId", "transferTime", "referenceId");
+
+    private static final String JSON_FILTER_PREFIX = "json.";
+
+    // Stays below the servlet container's default async request timeout (30s)
+    private static final long MAX_POLL_TIMEOUT_MS = 25_000;
+
     @Autowired
     private DataTransferReceiverService dataTransferReceiverService;
 
+    @Autowired
+    private DataTransferExportService dataTransferExportService;
+
+    @Autowired
+    private DataTransferIngestionService dataTransferIngestionService;
+
+    @Autowired
+    private DataTransferSubscriptionService dataTransferSubscriptionService;
+
     /**
      * Create a new data transfer with JSON data and a reference ID
      */
@@ -28,45 +59,44 @@ public class DataTransferReceiverController {
             @RequestParam String referenceId,
             @RequestBody String jsonData) {
         
-        DataTransfer created = dataTransferReceiverService.createDataTransfer(referenceId, jsonData);
-        return new ResponseEntity<>(created, HttpStatus.CREATED);
+        try {
+            DataTransfer created = dataTransferReceiverService.createDataTransfer(referenceId, jsonData);
+            return new ResponseEntity<>(created, HttpStatus.CREATED);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     /**
      * Special endpoint that only receives JSON data and uses a default reference ID
-     * or an optional provided reference ID
+     * or an optional provided reference ID (the "id" field of the JSON data when not provided).
+     * With asynchronous ingestion enabled the transfer is queued and acknowledged with 202 before it is saved,
+     * and 429 is returned while the queue is full.
      */
     @PostMapping("/json-only")
     public ResponseEntity<DataTransfer> createDataTransferJsonOnly(
             @RequestParam(required = false) String referenceId,
             @RequestBody String jsonData) {
-        String actualReferenceId;
-        
-        if (referenceId != null && !referenceId.isEmpty()) {
-            // Use provided referenceId if it exists
-            actualReferenceId = referenceId;
-        } else {
-            // Try to extract id from the JSON data
-            try {
-                com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-                com.fasterxml.jackson.databind.JsonNode jsonNode = mapper.readTree(jsonData);
-                
-                if (jsonNode.has("id")) {
-                    String idFromJson = jsonNode.get("id").asText();
-                    //actualReferenceId = "json-id-" + idFromJson;
-                    actualReferenceId = "" + idFromJson;
-                } else {
-                    // Leave empty if no id field in JSON
-                    actualReferenceId = "";
-                }
-            } catch (Exception e) {
-                // If JSON parsing fails, leave referenceId empty
-                actualReferenceId = "";
+        try {
+            String actualReferenceId = referenceId != null && !referenceId.isEmpty()
+                    ? referenceId
+                    : dataTransferReceiverService.readReferenceId(jsonData);
+
+            if (dataTransferIngestionService.isEnabled()) {
+                DataTransfer accepted = dataTransferIngestionService.submit(
+                        dataTransferReceiverService.newDataTransfer(actualReferenceId, jsonData));
+                return new ResponseEntity<>(accepted, HttpStatus.ACCEPTED);
             }
+
+            DataTransfer created = dataTransferReceiverService.createDataTransfer(actualReferenceId, jsonData);
+            return new ResponseEntity<>(created, HttpStatus.CREATED);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
         }
-        
-        DataTransfer created = dataTransferReceiverService.createDataTransfer(actualReferenceId, jsonData);
-        return new ResponseEntity<>(created, HttpStatus.CREATED);
     }
 
     /**
@@ -111,12 +141,102 @@ public class DataTransferReceiverController {
     }
 
     /**
-     * Get all data transfers
+     * List data transfers, optionally filtered by reference ID, time range and payload fields. Payload filters are
+     * passed as json.&lt;path&gt;=value, e.g. json.productType=Battery&amp;json.manufacturer.name=ACME, and are
+     * evaluated in the database; values such as 21, true or null also match JSON numbers, booleans and null. Pages are selected either by
+     * page/size/sort or by passing the last seen ID as "after" (start with after=0), which stays fast on
+     * large tables; see {@link PagingSupport} for the headers.
      */
     @GetMapping
-    public ResponseEntity<List<DataTransfer>> getAllDataTransfers() {
-        List<DataTransfer> transfers = dataTransferReceiverService.getAllDataTransfers();
-        return ResponseEntity.ok(transfers);
+    public ResponseEntity<List<DataTransfer>> getAllDataTransfers(
+            @RequestParam(required = false) String referenceId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long after,
+            @RequestParam Map<String, String> params,
+            @PageableDefault(size = 100, sort = "id") Pageable pageable) {
+        Map<String, String> jsonFields = new HashMap<>();
+        params.forEach((name, value) -> {
+            if (name.startsWith(JSON_FILTER_PREFIX) && name.length() > JSON_FILTER_PREFIX.length()) {
+                jsonFields.put(name.substring(JSON_FILTER_PREFIX.length()), value);
+            }
+        });
+
+        Specification<DataTransfer> filter = Specification
+                .where(DataTransferSpecifications.hasReferenceId(referenceId))
+                .and(DataTransferSpecifications.transferredFrom(from))
+                .and(DataTransferSpecifications.transferredUntil(to))
+                .and(DataTransferSpecifications.jsonFieldsEqual(jsonFields));
+
+        if (after != null) {
+            try {
+                PagingSupport.checkKeysetSort(pageable.getSort());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+            List<DataTransfer> rows =
+                    dataTransferReceiverService.getDataTransfersAfter(filter, after, pageable.getPageSize() + 1);
+            return PagingSupport.keysetResponse(rows, pageable.getPageSize(), DataTransfer::getId);
+        }
+
+        try {
+            PagingSupport.checkSortable(pageable.getSort(), SORTABLE_FIELDS);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return PagingSupport.pageResponse(dataTransferReceiverService.getDataTransfers(filter, pageable));
+    }
+
+    /**
+     * Stream new data transfers as Server-Sent Events ("data-transfer" events with the transfer as data),
+     * for one reference ID or for all when it is omitted. Browsers reconnect automatically and send
+     * Last-Event-ID, which resumes the stream from recently buffered events.
+     */
+    @GetMapping(path = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(
+            @RequestParam(required = false) String referenceId,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return dataTransferSubscriptionService.subscribe(referenceId, lastEventId);
+    }
+
+    /**
+     * Long-poll for new data transfers, for one reference ID or for all when it is omitted. Returns as soon as
+     * transfers newer than "after" exist, or an empty list after timeoutMs. Pass the X-Next-Cursor header value
+     * as "after" in the next poll; without "after" only transfers saved from now on are returned.
+     */
+    @GetMapping("/poll")
+    public CompletableFuture<ResponseEntity<List<DataTransfer>>> poll(
+            @RequestParam(required = false) String referenceId,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "25000") long timeoutMs) {
+        long timeout = Math.min(Math.max(timeoutMs, 0), MAX_POLL_TIMEOUT_MS);
+        return dataTransferSubscriptionService.poll(referenceId, after, timeout)
+                .thenApply(batch -> ResponseEntity.ok()
+                        .header(PagingSupport.NEXT_CURSOR_HEADER, String.valueOf(batch.cursor()))
+                        .body(batch.transfers()));
+    }
+
+    /**
+     * Export all data transfers as NDJSON (default) or CSV. The export is streamed from a database cursor,
+     * so it can be used on tables of any size.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportDataTransfers(
+            @RequestParam(defaultValue = "ndjson") String format) {
+        DataTransferExportService.Format exportFormat;
+        try {
+            exportFormat = DataTransferExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        boolean csv = exportFormat == DataTransferExportService.Format.CSV;
+        StreamingResponseBody body = out -> dataTransferExportService.exportAll(exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(csv ? MediaType.parseMediaType("text/csv") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"data-transfers." + (csv ? "csv" : "ndjson") + "\"")
+                .body(body);
     }
 
     /**
@@ -130,6 +250,8 @@ public class DataTransferReceiverController {
         try {
             DataTransfer updated = dataTransferReceiverService.updateJsonData(id, newJsonData);
             return ResponseEntity.ok(updated);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
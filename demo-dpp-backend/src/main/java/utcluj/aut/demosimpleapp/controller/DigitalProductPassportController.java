@@ -1,51 +1,246 @@
 package utcluj.aut.demosimpleapp.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import utcluj.aut.demosimpleapp.model.DigitalProductPassport;
 import utcluj.aut.demosimpleapp.model.RepairEntry;
+import utcluj.aut.demosimpleapp.repository.DigitalProductPassportSpecifications;
+import utcluj.aut.demosimpleapp.repository.PassportSummary;
+import utcluj.aut.demosimpleapp.service.CsvContent;
 import utcluj.aut.demosimpleapp.service.DigitalProductPassportService;
+import utcluj.aut.demosimpleapp.service.PassportImportService;
+import utcluj.aut.demosimpleapp.service.PassportSearchService;
 
 import java.io.IOException;
+import java.time.ZoneId;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/dpp")
 public class DigitalProductPassportController {
 
+    private static final Set<String> SORTABLE_FIELDS = Set.of(
+            "id", "productName", "manufacturer", "serialNumber", "manufacturingDate", "productType", "modelNumber");
+
+    private static final Set<String> REPAIR_SORTABLE_FIELDS = Set.of("id", "repairDate", "repairType", "technician");
+
     @Autowired
     private DigitalProductPassportService passportService;
+
+    @Autowired
+    private PassportImportService passportImportService;
+
+    @Autowired
+    private PassportSearchService passportSearchService;
     
     @Value("${encryption.csv.enabled:false}")
     private boolean encryptCsvEnabled;
 
+    /**
+     * Get a passport. The response carries an ETag and Last-Modified, so clients can revalidate with
+     * If-None-Match or If-Modified-Since and get 304 Not Modified while the passport is unchanged.
+     * With fields (e.g. fields=productName,serialNumber) only those fields and the ID are returned.
+     */
     @GetMapping("/detail")
-    public ResponseEntity<DigitalProductPassport> getPassportById(@RequestParam Long id) {
-        return ResponseEntity.ok(passportService.getPassportById(id));
+    public ResponseEntity<?> getPassportById(@RequestParam Long id,
+                                             @RequestParam(required = false) String fields) {
+        try {
+            return versioned(passportService.getPassportById(id), passportService.parseFields(fields));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
+    /**
+     * Get a passport by serial number, with the same ETag and fields parameter as {@link #getPassportById}
+     */
     @GetMapping("/by-serial")
-    public ResponseEntity<DigitalProductPassport> getPassportBySerialNumber(@RequestParam String serialNumber) {
-        return ResponseEntity.ok(passportService.getPassportBySerialNumber(serialNumber));
+    public ResponseEntity<?> getPassportBySerialNumber(@RequestParam String serialNumber,
+                                                       @RequestParam(required = false) String fields) {
+        try {
+            return versioned(passportService.getPassportBySerialNumber(serialNumber),
+                    passportService.parseFields(fields));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * 200 with validators; Spring answers conditional GETs that match them with 304 and no body
+     */
+    private ResponseEntity<?> versioned(DigitalProductPassport passport, List<String> fields) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(passportETag(passport));
+        if (passport.getUpdatedAt() != null) {
+            response.lastModified(passport.getUpdatedAt().atZone(ZoneId.systemDefault()));
+        }
+        return response.body(fields == null ? passport : passportService.selectFields(passport, fields));
+    }
+
+    private static String passportETag(DigitalProductPassport passport) {
+        return "\"" + passport.getId() + "." + passport.getVersion() + "\"";
     }
 
+    /**
+     * List passports, optionally filtered. Pages are selected either by page/size/sort or, for large tables,
+     * by passing the last seen ID as "after" (start with after=0, in ID order only: 400 with another sort); see
+     * {@link PagingSupport} for the headers.
+     * With fields (e.g. fields=productName,serialNumber) only those columns are read and returned, plus the ID.
+     */
     @GetMapping
-    public ResponseEntity<List<DigitalProductPassport>> getAllPassports() {
-        return ResponseEntity.ok(passportService.getAllPassports());
+    public ResponseEntity<?> getAllPassports(
+            @RequestParam(required = false) String productType,
+            @RequestParam(required = false) String manufacturer,
+            @RequestParam(required = false) String modelNumber,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) String fields,
+            @PageableDefault(size = 100, sort = "id") Pageable pageable) {
+        Specification<DigitalProductPassport> filter = filter(productType, manufacturer, modelNumber);
+        List<String> selectedFields;
+        try {
+            selectedFields = passportService.parseFields(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (after != null) {
+            try {
+                PagingSupport.checkKeysetSort(pageable.getSort());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+            if (selectedFields != null) {
+                List<Map<String, Object>> rows = passportService.getPassportFieldsAfter(
+                        filter, selectedFields, after, pageable.getPageSize() + 1);
+                return PagingSupport.keysetResponse(rows, pageable.getPageSize(), row -> (Long) row.get("id"));
+            }
+            List<DigitalProductPassport> rows =
+                    passportService.getPassportsAfter(filter, after, pageable.getPageSize() + 1);
+            return PagingSupport.keysetResponse(rows, pageable.getPageSize(), DigitalProductPassport::getId);
+        }
+
+        try {
+            PagingSupport.checkSortable(pageable.getSort(), SORTABLE_FIELDS);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (selectedFields != null) {
+            return PagingSupport.pageResponse(passportService.getPassportFields(filter, selectedFields, pageable));
+        }
+        return PagingSupport.pageResponse(passportService.getPassports(filter, pageable));
+    }
+
+    /**
+     * List passport summaries (ID, product name, serial number and product type) for list views, with the same
+     * filters and paging as {@link #getAllPassports}. Only those columns are read.
+     */
+    @GetMapping("/summaries")
+    public ResponseEntity<List<PassportSummary>> getPassportSummaries(
+            @RequestParam(required = false) String productType,
+            @RequestParam(required = false) String manufacturer,
+            @RequestParam(required = false) String modelNumber,
+            @RequestParam(required = false) Long after,
+            @PageableDefault(size = 100, sort = "id") Pageable pageable) {
+        Specification<DigitalProductPassport> filter = filter(productType, manufacturer, modelNumber);
+        if (after != null) {
+            try {
+                PagingSupport.checkKeysetSort(pageable.getSort());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+            List<PassportSummary> rows =
+                    passportService.getPassportSummariesAfter(filter, after, pageable.getPageSize() + 1);
+            return PagingSupport.keysetResponse(rows, pageable.getPageSize(), PassportSummary::getId);
+        }
+
+        try {
+            PagingSupport.checkSortable(pageable.getSort(), SORTABLE_FIELDS);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return PagingSupport.pageResponse(passportService.getPassportSummaries(filter, pageable));
+    }
+
+    /**
+     * Search passports and their repair history by words or word prefixes (q=acme batt), or by similar words
+     * with fuzzy=true, optionally narrowed to a product type and manufacturer. Returns the total, one page of
+     * results in ID order and counts per product type and manufacturer; see {@link PassportSearchService}.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> search(
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "false") boolean fuzzy,
+            @RequestParam(required = false) String productType,
+            @RequestParam(required = false) String manufacturer,
+            @PageableDefault(size = 20) Pageable pageable) {
+        return ResponseEntity.ok(passportSearchService.search(q, fuzzy, productType, manufacturer, pageable));
+    }
+
+    private static Specification<DigitalProductPassport> filter(String productType, String manufacturer,
+                                                                String modelNumber) {
+        return Specification
+                .where(DigitalProductPassportSpecifications.hasProductType(productType))
+                .and(DigitalProductPassportSpecifications.hasManufacturer(manufacturer))
+                .and(DigitalProductPassportSpecifications.hasModelNumber(modelNumber));
     }
 
     @PostMapping
     public ResponseEntity<DigitalProductPassport> createPassport(@RequestBody DigitalProductPassport passport) {
-        return ResponseEntity.ok(passportService.createPassport(passport));
+        try {
+            return ResponseEntity.ok(passportService.createPassport(passport));
+        } catch (DataIntegrityViolationException | ObjectOptimisticLockingFailureException e) {
+            // Serial numbers are unique; a passport sent with an ID must carry its current version
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    /**
+     * Bulk import passports from a JSON array, NDJSON or CSV body, streamed and saved in batches.
+     * Returns a report of imported, duplicate and failed passports; 400 if the body could not be read to the end.
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+            "text/csv"})
+    public ResponseEntity<Map<String, Object>> importPassports(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            HttpServletRequest request) throws IOException {
+        PassportImportService.Format format;
+        if (MediaType.APPLICATION_NDJSON.includes(contentType)) {
+            format = PassportImportService.Format.NDJSON;
+        } else if (MediaType.APPLICATION_JSON.includes(contentType)) {
+            format = PassportImportService.Format.JSON;
+        } else {
+            format = PassportImportService.Format.CSV;
+        }
+        try {
+            Map<String, Object> report = passportImportService.importPassports(request.getInputStream(), format);
+            return report.containsKey("aborted")
+                    ? ResponseEntity.badRequest().body(report)
+                    : ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
     }
 
     @PostMapping("/repairs")
@@ -54,6 +249,39 @@ public class DigitalProductPassportController {
             @RequestBody RepairEntry repairEntry) {
         return ResponseEntity.ok(passportService.addRepairEntry(passportId, repairEntry));
     }
+
+    /**
+     * Add repair entries to many passports at once: a JSON array of {"passportId": ..., "repairs": [...]}.
+     * Either all entries are saved or, with 400, none (unknown passports, too many entries).
+     */
+    @PostMapping("/repairs/batch")
+    public ResponseEntity<List<RepairEntry>> addRepairEntries(
+            @RequestBody List<DigitalProductPassportService.RepairBatch> batches) {
+        try {
+            return ResponseEntity.ok(passportService.addRepairEntries(batches));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Page through a passport's repair history, by default oldest repair first; the total is in X-Total-Count
+     */
+    @GetMapping("/repairs")
+    public ResponseEntity<List<RepairEntry>> getRepairHistory(
+            @RequestParam Long passportId,
+            @PageableDefault(size = 100, sort = {"repairDate", "id"}) Pageable pageable) {
+        try {
+            PagingSupport.checkSortable(pageable.getSort(), REPAIR_SORTABLE_FIELDS);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        Page<RepairEntry> page = passportService.getRepairHistory(passportId, pageable);
+        if (page.getTotalElements() == 0 && !passportService.passportExists(passportId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return PagingSupport.pageResponse(page);
+    }
     
     @PatchMapping("/csv")
     public ResponseEntity<DigitalProductPassport> updateCsvFileName(
@@ -79,24 +307,111 @@ public class DigitalProductPassportController {
         }
     }
 
+    /**
+     * Download a passport's CSV file, optionally a single byte range of it. Files uploaded with a content hash
+     * get an ETag derived from it: If-None-Match is answered with 304, and a Range with an If-Range that no longer
+     * matches returns the whole file. Files stored compressed are sent as stored with a Content-Encoding when the
+     * client accepts that coding (ranges then apply to the compressed bytes), otherwise decompressed.
+     */
     @GetMapping("/download-csv")
-    public ResponseEntity<Resource> downloadCsvFile(@RequestParam Long passportId) {
+    public ResponseEntity<StreamingResponseBody> downloadCsvFile(
+            @RequestParam Long passportId,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest webRequest) {
         try {
             DigitalProductPassport passport = passportService.getPassportById(passportId);
             if (passport.getCsvFileName() == null || passport.getCsvFileName().isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
-            Resource resource = passportService.loadCsvFileAsResource(passportId);
-            return ResponseEntity.ok()
+            CsvContent content = passportService.openCsvContent(passportId, acceptedEncodings(acceptEncoding));
+            String eTag = passportService.csvETag(passport, content.contentEncoding());
+            // Also adds the ETag header to the response; on a match the status is set to 304
+            if (eTag != null && webRequest.checkNotModified(eTag)) {
+                return null;
+            }
+            long length = content.length();
+            
+            // Only a single byte range is honoured; multi-range requests get the whole file
+            long start = 0;
+            long end = length - 1;
+            boolean partial = false;
+            if (ifRange != null && !ifRange.equals(eTag)) {
+                // The client's copy is out of date (or cannot be validated): send everything
+                rangeHeader = null;
+            }
+            if (rangeHeader != null) {
+                try {
+                    List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                    if (ranges.size() == 1) {
+                        start = ranges.get(0).getRangeStart(length);
+                        end = ranges.get(0).getRangeEnd(length);
+                        if (start >= length || start > end) {
+                            throw new IllegalArgumentException("Range not satisfiable: " + rangeHeader);
+                        }
+                        partial = true;
+                    }
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                            .build();
+                }
+            }
+            
+            long offset = start;
+            long count = end - start + 1;
+            StreamingResponseBody body = out -> content.writeTo(out, offset, count);
+            
+            ResponseEntity.BodyBuilder response = partial
+                    ? ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length)
+                    : ResponseEntity.ok();
+            if (content.contentEncoding() != null) {
+                response.header(HttpHeaders.CONTENT_ENCODING, content.contentEncoding());
+            }
+            return response
                     .contentType(MediaType.parseMediaType("text/csv"))
+                    .contentLength(count)
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + passport.getCsvFileName() + "\"")
-                    .body(resource);
+                    .body(body);
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.internalServerError().build();
         }
     }
     
+    /**
+     * Content-codings listed in an Accept-Encoding header, without those refused with q=0
+     */
+    private static Set<String> acceptedEncodings(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return Set.of();
+        }
+        Set<String> encodings = new HashSet<>();
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(parameter.substring(2)) == 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (!refused && !coding.isEmpty()) {
+                encodings.add(coding);
+            }
+        }
+        return encodings;
+    }
+
     @GetMapping("/encryption-status")
     public ResponseEntity<Map<String, Boolean>> getEncryptionStatus() {
         Map<String, Boolean> status = new HashMap<>();
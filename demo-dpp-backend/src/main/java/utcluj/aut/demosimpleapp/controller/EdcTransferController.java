@@ -1,15 +1,19 @@
 package utcluj.aut.demosimpleapp.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import utcluj.aut.demosimpleapp.model.DataTransfer;
+import utcluj.aut.demosimpleapp.service.EdcTransferProfileRegistry;
 import utcluj.aut.demosimpleapp.service.EdcTransferService;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/edc-transfer")
@@ -18,20 +22,45 @@ public class EdcTransferController {
     @Autowired
     private EdcTransferService edcTransferService;
 
+    @Autowired
+    private EdcTransferProfileRegistry profileRegistry;
+
+    /**
+     * Lists the configured transfer profiles (edc.profiles.*)
+     *
+     * @return Name and connector URL of each profile
+     */
+    @GetMapping("/profiles")
+    public ResponseEntity<List<Map<String, String>>> getProfiles() {
+        List<Map<String, String>> profiles = new ArrayList<>();
+        for (EdcTransferProfileRegistry.TransferProfile profile : profileRegistry.getProfiles()) {
+            Map<String, String> entry = new HashMap<>();
+            entry.put("name", profile.getName());
+            entry.put("connectorUrl", profile.getConnectorUrl());
+            profiles.add(entry);
+        }
+        return ResponseEntity.ok(profiles);
+    }
+
     /**
      * Initiates a data transfer with EDC connector and retrieves the data 
-     * after waiting for a few seconds.
+     * as soon as the provider has pushed it (or after edc.transfer.timeout-ms).
+     * The request thread is released while waiting.
      * 
      * @param id The ID to use for the transfer and for retrieving data
+     * @param profile Transfer profile to use; by default the profile is chosen by ID
      * @return List of data transfers
      */
     @PostMapping("/initiate/{id}")
-    public ResponseEntity<List<DataTransfer>> initiateTransfer(@PathVariable String id) {
+    public CompletableFuture<ResponseEntity<List<DataTransfer>>> initiateTransfer(
+            @PathVariable String id,
+            @RequestParam(required = false) String profile) {
         try {
-            List<DataTransfer> transfers = edcTransferService.initiateTransferAndRetrieveData(id);
-            return ResponseEntity.ok(transfers);
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().build();
+            return edcTransferService.initiateTransferAndAwaitData(id, profile)
+                    .thenApply(ResponseEntity::ok)
+                    .exceptionally(e -> ResponseEntity.internalServerError().build());
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
         }
     }
 
@@ -40,11 +69,20 @@ public class EdcTransferController {
      * client can poll for results using the DataTransferReceiverController endpoints.
      * 
      * @param id The ID to use for the transfer
+     * @param profile Transfer profile to use; by default the profile is chosen by ID
      * @return Status message
      */
     @PostMapping("/initiate-async/{id}")
-    public ResponseEntity<Map<String, String>> initiateTransferAsync(@PathVariable String id) {
-        CompletableFuture<List<DataTransfer>> future = edcTransferService.initiateTransferAsync(id);
+    public ResponseEntity<Map<String, String>> initiateTransferAsync(
+            @PathVariable String id,
+            @RequestParam(required = false) String profile) {
+        try {
+            edcTransferService.initiateTransferAsync(id, profile);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
         
         Map<String, String> response = new HashMap<>();
         response.put("status", "Transfer initiated");
@@ -53,4 +91,28 @@ public class EdcTransferController {
         
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Initiates data transfers for a list of IDs and reports the status of each one.
+     * Connector calls are spread over a limited number of pooled connections and retried on failure.
+     *
+     * @param ids The IDs to transfer, e.g. ["1", "2", "3"]
+     * @param profile Transfer profile for all IDs; by default each ID is routed by itself
+     * @param awaitData Also wait for the data of each transfer to arrive (up to edc.transfer.timeout-ms)
+     * @return Status per ID, in request order
+     */
+    @PostMapping("/initiate-bulk")
+    public CompletableFuture<ResponseEntity<List<Map<String, Object>>>> initiateTransfersBulk(
+            @RequestBody List<String> ids,
+            @RequestParam(required = false) String profile,
+            @RequestParam(defaultValue = "false") boolean awaitData) {
+        try {
+            return edcTransferService.initiateTransfersBulk(ids, profile, awaitData)
+                    .thenApply(ResponseEntity::ok);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build());
+        }
+    }
 }
@@ -1,9 +1,17 @@
 package utcluj.aut.demosimpleapp.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import utcluj.aut.demosimpleapp.util.EncryptionUtil;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import utcluj.aut.demosimpleapp.service.EncryptionBatchService;
+import utcluj.aut.demosimpleapp.service.EncryptionService;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -13,6 +21,12 @@ import java.util.Map;
 @RequestMapping("/api/encryption")
 public class EncryptionController {
 
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private EncryptionBatchService encryptionBatchService;
+
     @PostMapping("/encrypt")
     public Map<String, String> encryptData(@RequestBody Map<String, String> payload) {
         String plainText = payload.get("plainText");
@@ -20,7 +34,7 @@ public class EncryptionController {
             throw new IllegalArgumentException("Plain text cannot be empty");
         }
         
-        String encrypted = EncryptionUtil.encrypt(plainText);
+        String encrypted = encryptionService.encrypt(plainText);
         
         Map<String, String> response = new HashMap<>();
         response.put("encrypted", encrypted);
@@ -34,10 +48,59 @@ public class EncryptionController {
             throw new IllegalArgumentException("Encrypted text cannot be empty");
         }
         
-        String decrypted = EncryptionUtil.decrypt(encryptedText);
+        String decrypted = encryptionService.decrypt(encryptedText);
         
         Map<String, String> response = new HashMap<>();
         response.put("decrypted", decrypted);
         return response;
     }
+    
+    /**
+     * Encrypt a JSON array of {"plainText": ...} items in parallel. Results keep the input order and
+     * carry either "encrypted" or "error" per item; 413 for more than encryption.batch.max-size items.
+     */
+    @PostMapping(value = "/encrypt-batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> encryptBatch(@RequestBody List<Map<String, String>> payloads) {
+        return processBatch(EncryptionBatchService.Operation.ENCRYPT, payloads);
+    }
+    
+    /**
+     * Streaming variant of encrypt-batch: one {"plainText": ...} item per NDJSON line in, one result per line out
+     */
+    @PostMapping(value = "/encrypt-batch", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody encryptBatchStream(HttpServletRequest request) {
+        return out -> encryptionBatchService.process(
+                EncryptionBatchService.Operation.ENCRYPT, request.getInputStream(), out);
+    }
+    
+    /**
+     * Decrypt a JSON array of {"encryptedText": ...} items in parallel. Results keep the input order and
+     * carry either "decrypted" or "error" per item; 413 for more than encryption.batch.max-size items.
+     */
+    @PostMapping(value = "/decrypt-batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> decryptBatch(@RequestBody List<Map<String, String>> payloads) {
+        return processBatch(EncryptionBatchService.Operation.DECRYPT, payloads);
+    }
+    
+    /**
+     * Streaming variant of decrypt-batch: one {"encryptedText": ...} item per NDJSON line in, one result per line out
+     */
+    @PostMapping(value = "/decrypt-batch", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody decryptBatchStream(HttpServletRequest request) {
+        return out -> encryptionBatchService.process(
+                EncryptionBatchService.Operation.DECRYPT, request.getInputStream(), out);
+    }
+
+    private ResponseEntity<?> processBatch(EncryptionBatchService.Operation operation,
+                                           List<Map<String, String>> payloads) {
+        try {
+            return ResponseEntity.ok(encryptionBatchService.process(operation, payloads));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(error);
+        }
+    }
 }
@@ -1,29 +1,99 @@
 package utcluj.aut.demosimpleapp.controller;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import utcluj.aut.demosimpleapp.service.TransferLogService;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.time.LocalDateTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 public class LoggerController {
 
+    private static final Logger logger = LoggerFactory.getLogger(LoggerController.class);
+
+    @Autowired
+    private TransferLogService transferLogService;
+
+    @Value("${transfer-log.read.max-entries:1000}")
+    private int readMaxEntries;
+
+    // How long a POST waits for its message to be written before answering 503
+    @Value("${transfer-log.append-timeout-ms:30000}")
+    private long appendTimeoutMs;
+
+    /**
+     * Append a message to the transfer log. Returns once it is written (and synced, with transfer-log.fsync=always);
+     * 429 while the log's queue is full, 503 if it is not written within transfer-log.append-timeout-ms.
+     */
     @PostMapping("/log")
-    public String logMessage(@RequestBody String message) {
-        // Log to console
-        System.out.println("Received message: " + message);
-
-        // Log to file
-        try (FileWriter writer = new FileWriter("log.txt", true)) {
-            writer.write(LocalDateTime.now() + " - " + message + System.lineSeparator());
-        } catch (IOException e) {
-            e.printStackTrace();
-            return "Failed to log message.";
+    public ResponseEntity<String> logMessage(@RequestBody String message) {
+        logger.debug("Received message of {} characters", message.length());
+        try {
+            transferLogService.append(message).orTimeout(appendTimeoutMs, TimeUnit.MILLISECONDS).join();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body("Log is busy, retry later.");
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Timed out writing message.");
+            }
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to log message.");
+        }
+        return ResponseEntity.ok("Message logged successfully.");
+    }
+
+    /**
+     * Read log entries in order, optionally between two times (e.g. from=2025-04-13T00:00:00Z). At most limit
+     * entries are returned; when there are more, pass the X-Next-Cursor header value as after to continue.
+     */
+    @GetMapping("/log")
+    public ResponseEntity<List<TransferLogService.Entry>> readLog(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "100") int limit) throws IOException {
+        if (limit < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            TransferLogService.Scan scan = transferLogService.read(from, to, after, Math.min(limit, readMaxEntries));
+            if (scan.nextCursor() == null) {
+                return ResponseEntity.ok(scan.entries());
+            }
+            return ResponseEntity.ok()
+                    .header(PagingSupport.NEXT_CURSOR_HEADER, scan.nextCursor())
+                    .body(scan.entries());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
+    }
 
-        return "Message logged successfully.";
+    /**
+     * The last log entries, oldest first
+     */
+    @GetMapping("/log/tail")
+    public ResponseEntity<List<TransferLogService.Entry>> tailLog(@RequestParam(defaultValue = "100") int lines)
+            throws IOException {
+        if (lines < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(transferLogService.tail(Math.min(lines, readMaxEntries)));
     }
 }
@@ -0,0 +1,72 @@
+package utcluj.aut.demosimpleapp.controller;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Shared handling of paged list endpoints. List bodies stay plain JSON arrays; paging information is returned
+ * in headers so existing clients keep working:
+ * <ul>
+ *   <li>{@code X-Total-Count} - total number of matching rows (page/offset mode)</li>
+ *   <li>{@code X-Next-Cursor} - value to pass as {@code after} for the next page (keyset mode), absent on the last page</li>
+ * </ul>
+ * Keyset pages are ordered by ID, so {@code after} cannot be combined with another {@code sort}.
+ */
+final class PagingSupport {
+
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private PagingSupport() {
+    }
+
+    /**
+     * Reject sort properties that are not in the allowed set, instead of failing later in the query
+     */
+    static void checkSortable(Sort sort, Set<String> sortableFields) {
+        for (Sort.Order order : sort) {
+            if (!sortableFields.contains(order.getProperty())) {
+                throw new IllegalArgumentException("Cannot sort by " + order.getProperty()
+                        + "; allowed fields are " + sortableFields);
+            }
+        }
+    }
+
+    /**
+     * Keyset pages are always in ascending ID order; reject any other sort instead of silently ignoring it
+     */
+    static void checkKeysetSort(Sort sort) {
+        for (Sort.Order order : sort) {
+            if (!order.getProperty().equals("id") || order.isDescending()) {
+                throw new IllegalArgumentException("after can only be combined with sort=id (ascending)");
+            }
+        }
+    }
+
+    static <T> ResponseEntity<List<T>> pageResponse(Page<T> page) {
+        return ResponseEntity.ok()
+                .header(TOTAL_COUNT_HEADER, String.valueOf(page.getTotalElements()))
+                .body(page.getContent());
+    }
+
+    /**
+     * Build a keyset page response
+     * @param rows Rows fetched with a limit of pageSize + 1, ordered by ID
+     * @param pageSize Requested page size
+     * @param idOf ID accessor used for the next cursor
+     */
+    static <T> ResponseEntity<List<T>> keysetResponse(List<T> rows, int pageSize, Function<T, Long> idOf) {
+        if (rows.size() <= pageSize) {
+            return ResponseEntity.ok(rows);
+        }
+        List<T> page = rows.subList(0, pageSize);
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, String.valueOf(idOf.apply(page.get(pageSize - 1))))
+                .body(page);
+    }
+}
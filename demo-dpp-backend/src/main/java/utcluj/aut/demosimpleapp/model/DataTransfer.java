@@ -1,14 +1,21 @@
 package utcluj.aut.demosimpleapp.model;
 
 import jakarta.persistence.*;
-import org.hibernate.annotations.Type;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "data_transfers")
+@Table(name = "data_transfers", indexes = {
+        // Serves lookups by reference ID alone and by reference ID within a time window
+        @Index(name = "idx_data_transfers_reference_id_transfer_time", columnList = "reference_id, transfer_time"),
+        @Index(name = "idx_data_transfers_transfer_time", columnList = "transfer_time")
+})
 public class DataTransfer {
+    // Sequence IDs (allocated 50 at a time) let Hibernate batch inserts, which identity columns prevent
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "data_transfers_seq")
+    @SequenceGenerator(name = "data_transfers_seq", sequenceName = "data_transfers_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "transfer_id", nullable = false, unique = true)
@@ -20,7 +27,9 @@ public class DataTransfer {
     @Column(name = "reference_id")
     private String referenceId;
 
-    @Column(name = "json_data", columnDefinition = "TEXT")
+    // jsonb on PostgreSQL so payload fields can be filtered and indexed in the database; json on H2
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "json_data")
     private String jsonData;
 
     // Default constructor
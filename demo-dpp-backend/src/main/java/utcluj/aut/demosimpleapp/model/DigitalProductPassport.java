@@ -1,15 +1,27 @@
 package utcluj.aut.demosimpleapp.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "ux_digital_product_passport_serial_number", columnList = "serialNumber", unique = true),
+        // List filters and search facets
+        @Index(name = "ix_digital_product_passport_product_type", columnList = "productType"),
+        @Index(name = "ix_digital_product_passport_manufacturer", columnList = "manufacturer")
+})
 public class DigitalProductPassport {
+    // Sequence IDs (allocated 50 at a time) let Hibernate batch inserts, e.g. for bulk imports
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "digital_product_passport_seq")
+    @SequenceGenerator(name = "digital_product_passport_seq", sequenceName = "digital_product_passport_seq",
+            allocationSize = 50)
     private Long id;
 
     private String productName;
@@ -20,8 +32,21 @@ public class DigitalProductPassport {
     private String modelNumber;
     private String csvFileName;  // Field for storing CSV file name
     private boolean encrypted;   // New field to track if the file is encrypted
+    // Hex SHA-256 of the uploaded CSV content (before encryption); not returned, as it would reveal whether a
+    // passport holds a known file
+    @JsonIgnore
+    private String csvSha256;
 
+    // Incremented on every change (including new repair entries); together with the ID it is the passport's ETag
+    @Version
+    @ColumnDefault("0")
+    private long version;
+
+    private LocalDateTime updatedAt;
+
+    // Batch size covers the paths that do not use an entity graph, so loading N passports costs N/100 extra queries
     @JsonManagedReference
+    @BatchSize(size = 100)
     @OneToMany(mappedBy = "passport", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<RepairEntry> repairHistory = new ArrayList<>();
 
@@ -98,6 +123,36 @@ public class DigitalProductPassport {
         this.encrypted = encrypted;
     }
 
+    public String getCsvSha256() {
+        return csvSha256;
+    }
+
+    public void setCsvSha256(String csvSha256) {
+        this.csvSha256 = csvSha256;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = LocalDateTime.now();
+    }
+
     public List<RepairEntry> getRepairHistory() {
         return repairHistory;
     }
@@ -5,9 +5,12 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+// Serves a passport's repair history page by page in date order
+@Table(indexes = @Index(name = "ix_repair_entry_passport_id_repair_date", columnList = "passport_id, repairDate"))
 public class RepairEntry {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "repair_entry_seq")
+    @SequenceGenerator(name = "repair_entry_seq", sequenceName = "repair_entry_seq", allocationSize = 50)
     private Long id;
 
     private LocalDateTime repairDate;
@@ -16,7 +19,7 @@ public class RepairEntry {
     private String technician;
 
     @JsonBackReference
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "passport_id")
     private DigitalProductPassport passport;
 
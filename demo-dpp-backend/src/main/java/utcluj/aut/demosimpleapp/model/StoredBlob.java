@@ -0,0 +1,84 @@
+package utcluj.aut.demosimpleapp.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A content-addressed blob in the upload store, shared by every stored file with the same content.
+ * The blob is deleted once no stored file references it any more.
+ */
+@Entity
+@Table(name = "blobs")
+public class StoredBlob {
+    // Key in the blob store, derived from the content hash
+    @Id
+    @Column(name = "storage_key")
+    private String storageKey;
+
+    // Hex SHA-256 of the content as uploaded
+    @Column(name = "sha256", nullable = false)
+    private String sha256;
+
+    @Column(name = "encrypted", nullable = false)
+    private boolean encrypted;
+
+    // Bytes in the store (after encryption, if any)
+    @Column(name = "stored_size", nullable = false)
+    private long storedSize;
+
+    // Number of stored files using this blob
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Getters and Setters
+    public String getStorageKey() {
+        return storageKey;
+    }
+
+    public void setStorageKey(String storageKey) {
+        this.storageKey = storageKey;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public boolean isEncrypted() {
+        return encrypted;
+    }
+
+    public void setEncrypted(boolean encrypted) {
+        this.encrypted = encrypted;
+    }
+
+    public long getStoredSize() {
+        return storedSize;
+    }
+
+    public void setStoredSize(long storedSize) {
+        this.storedSize = storedSize;
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,105 @@
+package utcluj.aut.demosimpleapp.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Where a passport's uploaded CSV file is stored, with its metadata. There is at most one file per passport;
+ * uploading a new file replaces the record.
+ */
+@Entity
+@Table(name = "stored_files", indexes = @Index(name = "ux_stored_files_passport_id", columnList = "passport_id", unique = true))
+public class StoredFile {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "passport_id", nullable = false)
+    private Long passportId;
+
+    // File name inside the uploads directory
+    @Column(name = "storage_key", nullable = false)
+    private String storageKey;
+
+    @Column(name = "original_filename")
+    private String originalFilename;
+
+    // Bytes on disk (after encryption, if any)
+    @Column(name = "stored_size", nullable = false)
+    private long storedSize;
+
+    // Hex SHA-256 of the content as uploaded; null for files indexed from before hashes were recorded
+    @Column(name = "sha256")
+    private String sha256;
+
+    @Column(name = "encrypted", nullable = false)
+    private boolean encrypted;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getPassportId() {
+        return passportId;
+    }
+
+    public void setPassportId(Long passportId) {
+        this.passportId = passportId;
+    }
+
+    public String getStorageKey() {
+        return storageKey;
+    }
+
+    public void setStorageKey(String storageKey) {
+        this.storageKey = storageKey;
+    }
+
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    public void setOriginalFilename(String originalFilename) {
+        this.originalFilename = originalFilename;
+    }
+
+    public long getStoredSize() {
+        return storedSize;
+    }
+
+    public void setStoredSize(long storedSize) {
+        this.storedSize = storedSize;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public boolean isEncrypted() {
+        return encrypted;
+    }
+
+    public void setEncrypted(boolean encrypted) {
+        this.encrypted = encrypted;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -1,15 +1,24 @@
 package utcluj.aut.demosimpleapp.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import utcluj.aut.demosimpleapp.model.DataTransfer;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
-public interface DataTransferRepository extends JpaRepository<DataTransfer, Long> {
+public interface DataTransferRepository extends JpaRepository<DataTransfer, Long>, JpaSpecificationExecutor<DataTransfer> {
     
     Optional<DataTransfer> findByTransferId(String transferId);
     
@@ -18,4 +27,19 @@ public interface DataTransferRepository extends JpaRepository<DataTransfer, Long
     List<DataTransfer> findByTransferTimeBetween(LocalDateTime startTime, LocalDateTime endTime);
     
     List<DataTransfer> findByReferenceIdAndTransferTimeBetween(String referenceId, LocalDateTime startTime, LocalDateTime endTime);
+
+    @Query("select t.transferId from DataTransfer t where t.transferId in :transferIds")
+    Set<String> findExistingTransferIds(@Param("transferIds") Collection<String> transferIds);
+
+    /**
+     * Stream all transfers in ID order through a server-side cursor. Must be consumed inside a transaction
+     * and closed afterwards; rows are fetched from the database in batches of the fetch size.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("select t from DataTransfer t order by t.id")
+    Stream<DataTransfer> streamAll();
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package utcluj.aut.demosimpleapp.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.springframework.data.jpa.domain.Specification;
+import utcluj.aut.demosimpleapp.model.DataTransfer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filters for data transfer list queries. A null argument yields no restriction.
+ */
+public final class DataTransferSpecifications {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectReader SCALAR_READER = MAPPER.reader()
+            .with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+
+    private DataTransferSpecifications() {
+    }
+
+    public static Specification<DataTransfer> hasReferenceId(String referenceId) {
+        return (root, query, cb) -> referenceId == null ? null : cb.equal(root.get("referenceId"), referenceId);
+    }
+
+    public static Specification<DataTransfer> transferredFrom(LocalDateTime startTime) {
+        return (root, query, cb) -> startTime == null ? null
+                : cb.greaterThanOrEqualTo(root.get("transferTime"), startTime);
+    }
+
+    public static Specification<DataTransfer> transferredUntil(LocalDateTime endTime) {
+        return (root, query, cb) -> endTime == null ? null
+                : cb.lessThanOrEqualTo(root.get("transferTime"), endTime);
+    }
+
+    /**
+     * Keyset condition: only transfers with an ID greater than the cursor
+     */
+    public static Specification<DataTransfer> idGreaterThan(Long afterId) {
+        return (root, query, cb) -> afterId == null ? null : cb.greaterThan(root.get("id"), afterId);
+    }
+
+    /**
+     * Payload condition evaluated in the database: every path must hold the given value. Paths are dot-separated
+     * field names, so {"productType": "Battery", "manufacturer.name": "ACME"} matches payloads containing
+     * {"productType": "Battery", "manufacturer": {"name": "ACME"}}. Values that read as a JSON number, boolean or
+     * null also match that value, so "21" matches both 21 and "21".
+     */
+    public static Specification<DataTransfer> jsonFieldsEqual(Map<String, String> fields) {
+        return (root, query, cb) -> {
+            if (fields == null || fields.isEmpty()) {
+                return null;
+            }
+            HibernateCriteriaBuilder hcb = (HibernateCriteriaBuilder) cb;
+            Expression<String> json = root.get("jsonData");
+            List<Predicate> predicates = new ArrayList<>();
+            Map<String, JsonNode> strings = new LinkedHashMap<>();
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                TextNode text = TextNode.valueOf(field.getValue());
+                JsonNode typed = typedValue(field.getValue());
+                if (typed == null) {
+                    strings.put(field.getKey(), text);
+                } else {
+                    predicates.add(cb.or(
+                            contains(hcb, json, Map.of(field.getKey(), typed)),
+                            contains(hcb, json, Map.of(field.getKey(), text))));
+                }
+            }
+            if (!strings.isEmpty()) {
+                predicates.add(contains(hcb, json, strings));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    private static Predicate contains(HibernateCriteriaBuilder cb, Expression<String> json,
+                                      Map<String, JsonNode> fields) {
+        // Bound as a parameter rather than inlined, so the statement is the same for every filter value
+        Expression<String> document = cb.value(containmentDocument(fields));
+        return cb.isTrue(cb.function(JsonFunctionContributor.JSON_CONTAINS, Boolean.class, json, document));
+    }
+
+    /**
+     * The value as a JSON number, boolean or null, or null if it is anything else (including a string)
+     */
+    static JsonNode typedValue(String value) {
+        try {
+            JsonNode node = SCALAR_READER.readTree(value);
+            return node != null && (node.isNumber() || node.isBoolean() || node.isNull()) ? node : null;
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    static String containmentDocument(Map<String, JsonNode> fields) {
+        ObjectNode document = MAPPER.createObjectNode();
+        for (Map.Entry<String, JsonNode> field : fields.entrySet()) {
+            String[] path = field.getKey().split("\\.");
+            ObjectNode parent = document;
+            for (int i = 0; i < path.length - 1; i++) {
+                parent = parent.has(path[i]) && parent.get(path[i]).isObject()
+                        ? (ObjectNode) parent.get(path[i])
+                        : parent.putObject(path[i]);
+            }
+            parent.set(path[path.length - 1], field.getValue());
+        }
+        return document.toString();
+    }
+}
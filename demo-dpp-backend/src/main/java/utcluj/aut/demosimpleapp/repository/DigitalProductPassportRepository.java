@@ -1,8 +1,48 @@
 package utcluj.aut.demosimpleapp.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import utcluj.aut.demosimpleapp.model.DigitalProductPassport;
 
-public interface DigitalProductPassportRepository extends JpaRepository<DigitalProductPassport, Long> {
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+public interface DigitalProductPassportRepository extends JpaRepository<DigitalProductPassport, Long>,
+        JpaSpecificationExecutor<DigitalProductPassport>, PassportProjectionRepository {
     DigitalProductPassport findBySerialNumber(String serialNumber);
-} 
\ No newline at end of file
+
+    /**
+     * Load all passports together with their repair history in a single query
+     */
+    @EntityGraph(attributePaths = "repairHistory")
+    @Query("select p from DigitalProductPassport p order by p.id")
+    List<DigitalProductPassport> findAllWithRepairHistory();
+
+    @EntityGraph(attributePaths = "repairHistory")
+    Optional<DigitalProductPassport> findWithRepairHistoryById(Long id);
+
+    @EntityGraph(attributePaths = "repairHistory")
+    Optional<DigitalProductPassport> findWithRepairHistoryBySerialNumber(String serialNumber);
+
+    @Query("select p.serialNumber from DigitalProductPassport p where p.serialNumber in :serialNumbers")
+    Set<String> findExistingSerialNumbers(@Param("serialNumbers") Collection<String> serialNumbers);
+
+    @Query("select p.id from DigitalProductPassport p where p.id in :ids")
+    Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Give passports a new version and update time without loading them, e.g. after inserting repair entries
+     * for them directly
+     * @return Number of passports found
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update DigitalProductPassport p set p.version = p.version + 1, p.updatedAt = :now where p.id in :ids")
+    int markChanged(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,32 @@
+package utcluj.aut.demosimpleapp.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+import utcluj.aut.demosimpleapp.model.DigitalProductPassport;
+
+/**
+ * Filters for passport list queries. A null argument yields no restriction.
+ */
+public final class DigitalProductPassportSpecifications {
+
+    private DigitalProductPassportSpecifications() {
+    }
+
+    public static Specification<DigitalProductPassport> hasProductType(String productType) {
+        return (root, query, cb) -> productType == null ? null : cb.equal(root.get("productType"), productType);
+    }
+
+    public static Specification<DigitalProductPassport> hasManufacturer(String manufacturer) {
+        return (root, query, cb) -> manufacturer == null ? null : cb.equal(root.get("manufacturer"), manufacturer);
+    }
+
+    public static Specification<DigitalProductPassport> hasModelNumber(String modelNumber) {
+        return (root, query, cb) -> modelNumber == null ? null : cb.equal(root.get("modelNumber"), modelNumber);
+    }
+
+    /**
+     * Keyset condition: only passports with an ID greater than the cursor
+     */
+    public static Specification<DigitalProductPassport> idGreaterThan(Long afterId) {
+        return (root, query, cb) -> afterId == null ? null : cb.greaterThan(root.get("id"), afterId);
+    }
+}
@@ -0,0 +1,34 @@
+package utcluj.aut.demosimpleapp.repository;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Registers the {@code json_contains(document, fragment)} query function used by
+ * {@link DataTransferSpecifications#jsonFieldsEqual}. On PostgreSQL it is the jsonb containment operator, which
+ * can use the GIN index on {@code data_transfers.json_data}; on H2 it calls the Java function registered by
+ * {@link utcluj.aut.demosimpleapp.config.JsonFunctionsInitializer}.
+ * Registered through META-INF/services.
+ */
+public class JsonFunctionContributor implements FunctionContributor {
+
+    public static final String JSON_CONTAINS = "json_contains";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        BasicType<Boolean> booleanType = functionContributions.getTypeConfiguration()
+                .getBasicTypeRegistry().resolve(StandardBasicTypes.BOOLEAN);
+
+        if (functionContributions.getDialect() instanceof PostgreSQLDialect) {
+            functionContributions.getFunctionRegistry()
+                    .registerPattern(JSON_CONTAINS, "(?1 @> cast(?2 as jsonb))", booleanType);
+        } else if (functionContributions.getDialect() instanceof H2Dialect) {
+            functionContributions.getFunctionRegistry()
+                    .registerPattern(JSON_CONTAINS, "JSON_CONTAINS(?1, ?2)", booleanType);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package utcluj.aut.demosimpleapp.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import utcluj.aut.demosimpleapp.model.DigitalProductPassport;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Passport queries that select only some columns. Unlike projections through {@code findBy(spec, ...)},
+ * which load whole entities and convert them, these select just the requested columns.
+ */
+public interface PassportProjectionRepository {
+
+    /**
+     * Get one page of passports matching the filter, with only the given fields
+     * @param fields Names of basic passport attributes (not repairHistory)
+     * @param pageable Page and sort; no count query is run
+     * @return One map per passport from field name to value, in the order of {@code fields}
+     */
+    List<Map<String, Object>> findFields(Specification<DigitalProductPassport> filter, Collection<String> fields,
+                                         Pageable pageable);
+
+    /**
+     * Get one page of passports matching the filter as an interface projection, such as {@link PassportSummary},
+     * selecting only the columns of its getters
+     */
+    <T> List<T> findProjectedBy(Specification<DigitalProductPassport> filter, Class<T> projection, Pageable pageable);
+}
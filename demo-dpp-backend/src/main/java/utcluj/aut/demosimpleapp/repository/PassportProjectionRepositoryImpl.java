@@ -0,0 +1,90 @@
+package utcluj.aut.demosimpleapp.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import utcluj.aut.demosimpleapp.model.DigitalProductPassport;
+
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.jpa.repository.query.QueryUtils.toOrders;
+
+/**
+ * Criteria tuple queries behind {@link PassportProjectionRepository}; picked up by Spring Data as a fragment
+ * of {@link DigitalProductPassportRepository} by its Impl suffix
+ */
+public class PassportProjectionRepositoryImpl implements PassportProjectionRepository {
+
+    private final ProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Map<String, Object>> findFields(Specification<DigitalProductPassport> filter,
+                                                Collection<String> fields, Pageable pageable) {
+        List<String> names = new ArrayList<>(fields);
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<DigitalProductPassport> root = query.from(DigitalProductPassport.class);
+        List<Selection<?>> selections = new ArrayList<>(names.size());
+        for (String name : names) {
+            selections.add(root.get(name).alias(name));
+        }
+        query.multiselect(selections);
+        if (filter != null) {
+            Predicate predicate = filter.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        Sort sort = pageable.getSort();
+        if (sort.isSorted()) {
+            query.orderBy(toOrders(sort, root, cb));
+        }
+
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        List<Tuple> tuples = typedQuery.getResultList();
+        List<Map<String, Object>> rows = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (String name : names) {
+                row.put(name, tuple.get(name));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Override
+    public <T> List<T> findProjectedBy(Specification<DigitalProductPassport> filter, Class<T> projection,
+                                       Pageable pageable) {
+        List<String> fields = projectionFactory.getProjectionInformation(projection).getInputProperties().stream()
+                .map(PropertyDescriptor::getName)
+                .collect(Collectors.toList());
+        return findFields(filter, fields, pageable).stream()
+                .map(row -> projectionFactory.createProjection(projection, row))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,15 @@
+package utcluj.aut.demosimpleapp.repository;
+
+/**
+ * Columns a passport list view needs, read without the rest of the passport or its repair history
+ */
+public interface PassportSummary {
+
+    Long getId();
+
+    String getProductName();
+
+    String getSerialNumber();
+
+    String getProductType();
+}
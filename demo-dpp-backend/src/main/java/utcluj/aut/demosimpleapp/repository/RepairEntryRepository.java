@@ -0,0 +1,25 @@
+package utcluj.aut.demosimpleapp.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import utcluj.aut.demosimpleapp.model.RepairEntry;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface RepairEntryRepository extends JpaRepository<RepairEntry, Long> {
+
+    /**
+     * Page through one passport's repair history without loading the passport
+     */
+    Page<RepairEntry> findByPassportId(Long passportId, Pageable pageable);
+
+    /**
+     * Load the repair entries of several passports in one query, e.g. for a page of passports read by fields
+     */
+    @Query("select r from RepairEntry r where r.passport.id in :passportIds order by r.id")
+    List<RepairEntry> findByPassportIds(@Param("passportIds") Collection<Long> passportIds);
+}
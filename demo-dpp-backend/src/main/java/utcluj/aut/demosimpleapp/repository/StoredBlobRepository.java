@@ -0,0 +1,34 @@
+package utcluj.aut.demosimpleapp.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import utcluj.aut.demosimpleapp.model.StoredBlob;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String> {
+
+    /**
+     * Load a blob and lock its row until the end of the transaction, so its reference count and the object
+     * in the blob store change together
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from StoredBlob b where b.storageKey = :key")
+    Optional<StoredBlob> findForUpdate(@Param("key") String key);
+
+    /**
+     * Drop one reference to a blob
+     * @return Number of rows updated: 0 if the blob is unknown or already unreferenced
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update StoredBlob b set b.refCount = b.refCount - 1 where b.storageKey = :key and b.refCount > 0")
+    int release(@Param("key") String key);
+
+    @Query("select b.storageKey from StoredBlob b where b.refCount = 0")
+    List<String> findUnreferencedKeys();
+}
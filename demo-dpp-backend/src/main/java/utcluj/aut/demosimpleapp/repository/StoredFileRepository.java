@@ -0,0 +1,24 @@
+package utcluj.aut.demosimpleapp.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import utcluj.aut.demosimpleapp.model.StoredFile;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+public interface StoredFileRepository extends JpaRepository<StoredFile, Long> {
+
+    Optional<StoredFile> findByPassportId(Long passportId);
+
+    @Query("select f.storageKey from StoredFile f")
+    Set<String> findAllStorageKeys();
+
+    /**
+     * Passports that have a CSV file name but no stored file record
+     */
+    @Query("select p.id from DigitalProductPassport p where p.csvFileName is not null and p.csvFileName <> ''"
+            + " and not exists (select f.id from StoredFile f where f.passportId = p.id) order by p.id")
+    List<Long> findPassportIdsWithoutStoredFile();
+}
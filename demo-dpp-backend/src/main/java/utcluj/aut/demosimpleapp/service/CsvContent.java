@@ -0,0 +1,31 @@
+package utcluj.aut.demosimpleapp.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Content of a stored CSV file, with its length known before any byte is written.
+ * Implementations copy directly from storage into the response without loading the file into memory.
+ */
+public interface CsvContent {
+
+    /**
+     * @return Number of bytes in the content, as encoded by {@link #contentEncoding()}
+     */
+    long length();
+
+    /**
+     * Write a byte range of the content to the given stream
+     * @param out Destination stream, typically the HTTP response body
+     * @param offset Offset of the first byte to write
+     * @param count Number of bytes to write
+     */
+    void writeTo(OutputStream out, long offset, long count) throws IOException;
+
+    /**
+     * @return The HTTP content-coding the bytes are compressed with (e.g. gzip), or null for the plain CSV
+     */
+    default String contentEncoding() {
+        return null;
+    }
+}
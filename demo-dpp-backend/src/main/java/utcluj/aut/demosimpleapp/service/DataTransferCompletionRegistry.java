@@ -0,0 +1,76 @@
+package utcluj.aut.demosimpleapp.service;
+
+import org.springframework.stereotype.Service;
+import utcluj.aut.demosimpleapp.model.DataTransfer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Lets callers wait for the next data transfer saved for a reference ID instead of polling or sleeping.
+ * Waiters are registered before a transfer is requested and completed when the transfer has been saved.
+ * Listeners added with {@link #addListener} are notified of every saved transfer.
+ */
+@Service
+public class DataTransferCompletionRegistry {
+
+    // Lists are only modified inside compute calls, which are atomic per key
+    private final ConcurrentMap<String, List<CompletableFuture<DataTransfer>>> waiters = new ConcurrentHashMap<>();
+
+    private final List<Consumer<DataTransfer>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Add a listener called for every saved transfer, on the thread that saved it; it must not block
+     */
+    public void addListener(Consumer<DataTransfer> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Register interest in the next transfer for a reference ID. The caller should apply a timeout to the
+     * returned future; it is unregistered automatically once it completes or is cancelled.
+     */
+    public CompletableFuture<DataTransfer> register(String referenceId) {
+        CompletableFuture<DataTransfer> future = new CompletableFuture<>();
+        waiters.compute(referenceId, (key, futures) -> {
+            List<CompletableFuture<DataTransfer>> list = futures != null ? futures : new ArrayList<>();
+            list.add(future);
+            return list;
+        });
+        future.whenComplete((transfer, error) -> unregister(referenceId, future));
+        return future;
+    }
+
+    /**
+     * Signal that a transfer has been saved, completing everyone waiting for its reference ID
+     */
+    public void complete(DataTransfer transfer) {
+        listeners.forEach(listener -> listener.accept(transfer));
+        if (transfer.getReferenceId() == null) {
+            return;
+        }
+        List<CompletableFuture<DataTransfer>> futures = waiters.remove(transfer.getReferenceId());
+        if (futures != null) {
+            futures.forEach(future -> future.complete(transfer));
+        }
+    }
+
+    /**
+     * Number of callers currently waiting
+     */
+    public int getWaitingCount() {
+        return waiters.values().stream().mapToInt(List::size).sum();
+    }
+
+    private void unregister(String referenceId, CompletableFuture<DataTransfer> future) {
+        waiters.computeIfPresent(referenceId, (key, futures) -> {
+            futures.remove(future);
+            return futures.isEmpty() ? null : futures;
+        });
+    }
+}
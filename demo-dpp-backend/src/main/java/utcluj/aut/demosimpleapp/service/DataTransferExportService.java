@@ -0,0 +1,118 @@
+package utcluj.aut.demosimpleapp.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import utcluj.aut.demosimpleapp.model.DataTransfer;
+import utcluj.aut.demosimpleapp.repository.DataTransferRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * Dumps the whole data_transfers table for audits. Rows are read through a database cursor and detached from the
+ * persistence context once written, so memory use does not depend on the number of rows.
+ */
+@Service
+public class DataTransferExportService {
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    private static final String CSV_HEADER = "id,transferId,transferTime,referenceId,jsonData";
+
+    @Autowired
+    private DataTransferRepository dataTransferRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Write all data transfers in ID order to the given stream
+     * @param format Output format
+     * @param out Destination, typically the HTTP response body
+     */
+    @Transactional(readOnly = true)
+    public void exportAll(Format format, OutputStream out) throws IOException {
+        try (Stream<DataTransfer> transfers = dataTransferRepository.streamAll()) {
+            if (format == Format.CSV) {
+                writeCsv(transfers, out);
+            } else {
+                writeNdjson(transfers, out);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeNdjson(Stream<DataTransfer> transfers, OutputStream out) throws IOException {
+        // The mapper flushes after every value by default, which would turn the export into one write per row
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            transfers.forEach(transfer -> {
+                try {
+                    writer.writeValue(generator, transfer);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                entityManager.detach(transfer);
+            });
+            // Closing the generator flushes the output once
+        }
+    }
+
+    private void writeCsv(Stream<DataTransfer> transfers, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        writer.write("\r\n");
+        transfers.forEach(transfer -> {
+            try {
+                writer.write(String.valueOf(transfer.getId()));
+                writer.write(',');
+                writer.write(csvField(transfer.getTransferId()));
+                writer.write(',');
+                writer.write(csvField(transfer.getTransferTime() != null ? transfer.getTransferTime().toString() : null));
+                writer.write(',');
+                writer.write(csvField(transfer.getReferenceId()));
+                writer.write(',');
+                writer.write(csvField(transfer.getJsonData()));
+                writer.write("\r\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            entityManager.detach(transfer);
+        });
+        writer.flush();
+    }
+
+    /**
+     * Quote a CSV field (RFC 4180) when it contains a separator, quote or line break
+     */
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,362 @@
+package utcluj.aut.demosimpleapp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import utcluj.aut.demosimpleapp.model.DataTransfer;
+import utcluj.aut.demosimpleapp.repository.DataTransferRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind ingestion for data transfers pushed by EDC providers. Accepted transfers are acknowledged
+ * immediately and queued in a bounded buffer; a single writer thread saves them in batches, so a burst of
+ * callbacks costs a few batched inserts instead of one transaction per request.
+ * <p>
+ * When the buffer is full, {@link #submit} fails and the caller should ask the client to retry later.
+ * When a spool file is configured, every accepted transfer is appended and synced to it before it is
+ * acknowledged. Transfers still in the spool at startup (e.g. after a crash) are saved unless their transfer
+ * ID is already in the database, and the spool is emptied only once everything it holds has been saved.
+ * <p>
+ * Transfers that cannot be saved because the database is unavailable are kept and retried with growing
+ * delays; meanwhile the buffer fills up and new transfers are turned away. Transfers the database rejects
+ * (e.g. a duplicate transfer ID) can never be saved; they are logged and, with a spool, appended to
+ * {@code <spool-file>.rejected}.
+ */
+@Service
+public class DataTransferIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataTransferIngestionService.class);
+
+    @Autowired
+    private DataTransferRepository dataTransferRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DataTransferCompletionRegistry completionRegistry;
+
+    @Value("${data-transfers.ingest.async:false}")
+    private boolean enabled;
+
+    @Value("${data-transfers.ingest.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${data-transfers.ingest.batch-size:500}")
+    private int batchSize;
+
+    @Value("${data-transfers.ingest.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${data-transfers.ingest.spool-file:}")
+    private String spoolFile;
+
+    // Retry delays for a batch that could not be saved grow up to this
+    private static final long MAX_RETRY_DELAY_MS = 30_000;
+
+    // Guards queueing against shutdown, and appending to the spool against emptying it
+    private final Object submitLock = new Object();
+
+    private BlockingQueue<DataTransfer> queue;
+    private FileChannel spool;
+    private Path rejectedPath;
+    private Thread writer;
+    private volatile boolean running;
+
+    // Owned by the writer thread: transfers that could not be saved yet
+    private final List<DataTransfer> unsaved = new ArrayList<>();
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        if (!spoolFile.isEmpty()) {
+            Path spoolPath = Paths.get(spoolFile);
+            rejectedPath = Paths.get(spoolFile + ".rejected");
+            replaySpool(spoolPath);
+            spool = FileChannel.open(spoolPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            // Replayed transfers the database could not take yet are retried by the writer and keep the spool
+            if (unsaved.isEmpty()) {
+                spool.truncate(0);
+            }
+        }
+
+        running = true;
+        writer = new Thread(this::writeLoop, "data-transfer-writer");
+        writer.setDaemon(true);
+        writer.start();
+        logger.info("Asynchronous data transfer ingestion enabled (queue capacity {}, batch size {}, spool {})",
+                queueCapacity, batchSize, spool != null ? spoolFile : "disabled");
+    }
+
+    /**
+     * Stop accepting transfers and write out everything already queued. Transfers that still cannot be saved
+     * stay in the spool for the next start.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        if (writer == null) {
+            return;
+        }
+        synchronized (submitLock) {
+            running = false;
+        }
+        writer.join();
+        if (spool != null) {
+            spool.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue a transfer for saving
+     * @return A copy of the transfer as acknowledged, with its transfer ID and time but no database ID yet;
+     * the queued instance itself is owned by the writer thread
+     * @throws IllegalStateException if the buffer is full or ingestion is shutting down
+     */
+    public DataTransfer submit(DataTransfer transfer) {
+        DataTransfer acknowledged = new DataTransfer(transfer.getTransferId(), transfer.getTransferTime(),
+                transfer.getReferenceId(), transfer.getJsonData());
+        if (spool == null) {
+            // Checking and queueing under the lock shutdown() takes ensures the writer sees every queued transfer
+            synchronized (submitLock) {
+                if (!running) {
+                    throw new IllegalStateException("Data transfer ingestion is not running");
+                }
+                if (!queue.offer(transfer)) {
+                    throw new IllegalStateException("Data transfer ingestion queue is full");
+                }
+            }
+            return acknowledged;
+        }
+
+        ByteBuffer line = toSpoolLine(transfer);
+        try {
+            // Appending and queueing under one lock also keeps the spool from being emptied while it holds
+            // a transfer that is not queued yet
+            synchronized (submitLock) {
+                if (!running) {
+                    throw new IllegalStateException("Data transfer ingestion is not running");
+                }
+                if (queue.remainingCapacity() == 0) {
+                    throw new IllegalStateException("Data transfer ingestion queue is full");
+                }
+                while (line.hasRemaining()) {
+                    spool.write(line);
+                }
+                queue.add(transfer);
+            }
+            // Concurrent submitters sync in parallel rather than one after another
+            spool.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write data transfer to spool file", e);
+        }
+        return acknowledged;
+    }
+
+    /**
+     * Number of transfers waiting to be written
+     */
+    public int getQueuedCount() {
+        return queue != null ? queue.size() : 0;
+    }
+
+    private void writeLoop() {
+        List<DataTransfer> batch = new ArrayList<>(batchSize);
+        long retryDelayMs = flushIntervalMs;
+        while (running || !queue.isEmpty()) {
+            try {
+                if (!unsaved.isEmpty()) {
+                    // Retry before taking new transfers, so they wait in the bounded buffer meanwhile
+                    Thread.sleep(retryDelayMs);
+                    retryDelayMs = Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS);
+                    batch.addAll(unsaved);
+                    unsaved.clear();
+                } else {
+                    retryDelayMs = flushIntervalMs;
+                    DataTransfer first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        clearSpoolIfIdle();
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                }
+                saveBatch(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                unsaved.addAll(batch);
+                break;
+            }
+        }
+        if (!unsaved.isEmpty()) {
+            // One last attempt; whatever is still unsaved stays in the spool
+            List<DataTransfer> remaining = new ArrayList<>(unsaved);
+            unsaved.clear();
+            saveBatch(remaining);
+            if (!unsaved.isEmpty()) {
+                logger.error("{} data transfers could not be saved before shutdown{}", unsaved.size(),
+                        spool != null ? " and are kept in the spool file" : " and are lost");
+            }
+        }
+        clearSpoolIfIdle();
+    }
+
+    /**
+     * Save a batch; transfers that fail for a reason other than being rejected by the database are added to
+     * {@link #unsaved}
+     */
+    private void saveBatch(List<DataTransfer> batch) {
+        try {
+            dataTransferRepository.saveAll(batch).forEach(completionRegistry::complete);
+        } catch (DataIntegrityViolationException e) {
+            // Retry one by one so a single bad row does not hold back the rest of the batch
+            logger.warn("Batch insert of {} data transfers failed, retrying individually: {}",
+                    batch.size(), e.getMessage());
+            for (int i = 0; i < batch.size(); i++) {
+                DataTransfer transfer = batch.get(i);
+                try {
+                    transfer.setId(null);
+                    completionRegistry.complete(dataTransferRepository.save(transfer));
+                } catch (DataIntegrityViolationException rowError) {
+                    reject(transfer, rowError);
+                } catch (RuntimeException rowError) {
+                    // The database became unavailable; the rest of the batch would only fail the same way
+                    keepUnsaved(batch.subList(i, batch.size()), rowError);
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            // Connection and other transient errors: the whole batch waits for the retry backoff
+            keepUnsaved(batch, e);
+        }
+    }
+
+    private void keepUnsaved(List<DataTransfer> transfers, RuntimeException error) {
+        transfers.forEach(transfer -> transfer.setId(null));
+        unsaved.addAll(transfers);
+        logger.warn("{} data transfers could not be saved, will retry: {}", unsaved.size(), error.getMessage());
+    }
+
+    private void reject(DataTransfer transfer, RuntimeException error) {
+        logger.error("Database rejected data transfer {} (reference {})",
+                transfer.getTransferId(), transfer.getReferenceId(), error);
+        if (rejectedPath == null) {
+            return;
+        }
+        ByteBuffer line = toSpoolLine(transfer);
+        try (FileChannel rejected = FileChannel.open(rejectedPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (line.hasRemaining()) {
+                rejected.write(line);
+            }
+            rejected.force(false);
+        } catch (IOException e) {
+            logger.error("Failed to write rejected data transfer {} to {}", transfer.getTransferId(), rejectedPath, e);
+        }
+    }
+
+    private void clearSpoolIfIdle() {
+        if (spool == null) {
+            return;
+        }
+        synchronized (submitLock) {
+            try {
+                if (queue.isEmpty() && unsaved.isEmpty() && spool.size() > 0) {
+                    spool.truncate(0);
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to clear data transfer spool file", e);
+            }
+        }
+    }
+
+    /**
+     * Save transfers left in the spool by a previous run, skipping those that were already written
+     */
+    private void replaySpool(Path spoolPath) throws IOException {
+        if (!Files.exists(spoolPath)) {
+            return;
+        }
+        int replayed = 0;
+        List<DataTransfer> batch = new ArrayList<>(batchSize);
+        try (BufferedReader reader = Files.newBufferedReader(spoolPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    batch.add(objectMapper.readValue(line, DataTransfer.class));
+                } catch (IOException e) {
+                    // A torn last line from a crash mid-write was never acknowledged
+                    logger.warn("Skipping unreadable line in data transfer spool file");
+                    continue;
+                }
+                if (batch.size() == batchSize) {
+                    replayed += replayBatch(batch);
+                }
+            }
+        }
+        replayed += replayBatch(batch);
+        if (replayed > 0) {
+            logger.info("Saved {} data transfers recovered from spool file {}", replayed, spoolPath);
+        }
+    }
+
+    private int replayBatch(List<DataTransfer> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Set<String> existing = dataTransferRepository.findExistingTransferIds(
+                batch.stream().map(DataTransfer::getTransferId).collect(Collectors.toList()));
+        List<DataTransfer> missing = batch.stream()
+                .filter(transfer -> !existing.contains(transfer.getTransferId()))
+                .collect(Collectors.toList());
+        missing.forEach(transfer -> transfer.setId(null));
+        saveBatch(missing);
+        batch.clear();
+        return missing.size();
+    }
+
+    private ByteBuffer toSpoolLine(DataTransfer transfer) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(transfer);
+            ByteBuffer line = ByteBuffer.allocate(json.length + 1);
+            line.put(json).put((byte) '\n').flip();
+            return line;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,10 +1,21 @@
 package utcluj.aut.demosimpleapp.service;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import utcluj.aut.demosimpleapp.model.DataTransfer;
 import utcluj.aut.demosimpleapp.repository.DataTransferRepository;
+import utcluj.aut.demosimpleapp.repository.DataTransferSpecifications;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -19,21 +30,24 @@ public class DataTransferReceiverService {
     @Autowired
     private DataTransferRepository dataTransferRepository;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DataTransferCompletionRegistry completionRegistry;
+
     /**
      * Create a new data transfer record with the provided JSON data
      * 
      * @param referenceId Reference ID (such as product passport ID)
      * @param jsonData JSON data to store
      * @return The created DataTransfer entity
+     * @throws IllegalArgumentException if jsonData is not valid JSON
      */
     public DataTransfer createDataTransfer(String referenceId, String jsonData) {
-        DataTransfer dataTransfer = new DataTransfer();
-        dataTransfer.setTransferId(UUID.randomUUID().toString());
-        dataTransfer.setTransferTime(LocalDateTime.now());
-        dataTransfer.setReferenceId(referenceId);
-        dataTransfer.setJsonData(jsonData);
-        
-        return dataTransferRepository.save(dataTransfer);
+        DataTransfer saved = dataTransferRepository.save(newDataTransfer(referenceId, jsonData));
+        completionRegistry.complete(saved);
+        return saved;
     }
 
     /**
@@ -74,16 +88,25 @@ public class DataTransferReceiverService {
     }
 
     /**
-     * Get all data transfers
+     * Get one page of data transfers matching the filter, with the total count
      */
-    public List<DataTransfer> getAllDataTransfers() {
-        return dataTransferRepository.findAll();
+    public Page<DataTransfer> getDataTransfers(Specification<DataTransfer> filter, Pageable pageable) {
+        return dataTransferRepository.findAll(filter, pageable);
+    }
+
+    /**
+     * Get data transfers matching the filter with an ID greater than afterId, in ID order (keyset pagination)
+     */
+    public List<DataTransfer> getDataTransfersAfter(Specification<DataTransfer> filter, Long afterId, int limit) {
+        return dataTransferRepository.findBy(filter.and(DataTransferSpecifications.idGreaterThan(afterId)),
+                query -> query.sortBy(Sort.by("id")).limit(limit).all());
     }
 
     /**
      * Update the JSON data for an existing data transfer
      */
     public DataTransfer updateJsonData(Long id, String newJsonData) {
+        checkJson(newJsonData);
         DataTransfer dataTransfer = dataTransferRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Data transfer not found with id: " + id));
         
@@ -91,6 +114,59 @@ public class DataTransferReceiverService {
         return dataTransferRepository.save(dataTransfer);
     }
 
+    /**
+     * Build a new, not yet saved data transfer with a fresh transfer ID and the current time
+     * @throws IllegalArgumentException if jsonData is not valid JSON
+     */
+    public DataTransfer newDataTransfer(String referenceId, String jsonData) {
+        checkJson(jsonData);
+        return new DataTransfer(UUID.randomUUID().toString(), LocalDateTime.now(), referenceId, jsonData);
+    }
+
+    /**
+     * Read the top-level "id" field of a JSON payload. The payload is scanned once with a streaming parser,
+     * which also validates it, instead of being loaded into a tree.
+     * @return The id as text, or an empty string if there is no scalar top-level id
+     * @throws IllegalArgumentException if jsonData is not valid JSON
+     */
+    public String readReferenceId(String jsonData) {
+        String id = "";
+        try (JsonParser parser = objectMapper.getFactory().createParser(jsonData)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                throw new IllegalArgumentException("jsonData is empty");
+            }
+            if (token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("id".equals(field) && value.isScalarValue()) {
+                        id = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+            if (parser.nextToken() != null) {
+                throw new IllegalArgumentException("jsonData contains more than one JSON value");
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("jsonData is not valid JSON: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return id;
+    }
+
+    /**
+     * Reject payloads the jsonb column would not accept, before they reach the database
+     */
+    private void checkJson(String jsonData) {
+        readReferenceId(jsonData);
+    }
+
     /**
      * Delete a data transfer by ID
      */
@@ -0,0 +1,291 @@
+package utcluj.aut.demosimpleapp.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import utcluj.aut.demosimpleapp.model.DataTransfer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes newly saved data transfers to clients, either as a Server-Sent Events stream or through long polling,
+ * so clients do not have to poll the database for new transfers.
+ * <p>
+ * Every saved transfer is numbered with an in-memory event sequence and kept in a ring buffer of recent events.
+ * The sequence is the cursor for both variants (SSE event ID / Last-Event-ID, long-poll "after"), so a client
+ * that reconnects gets the events it missed as long as they are still buffered. Each SSE subscriber is fed from
+ * its own queue by its own virtual thread, so a client that stops reading blocks only that thread (until the
+ * server's write timeout fails the send); a subscriber that falls too far behind is disconnected instead of
+ * slowing down ingestion or other subscribers. Heartbeats are queued like events and never block either.
+ */
+@Service
+public class DataTransferSubscriptionService {
+
+    /**
+     * Long-poll result: the transfers found and the cursor to pass as "after" in the next poll
+     */
+    public record Batch(List<DataTransfer> transfers, long cursor) {
+    }
+
+    private record Event(long sequence, DataTransfer transfer) {
+    }
+
+    private record PollWaiter(String referenceId, CompletableFuture<Batch> result) {
+    }
+
+    private static final Event HEARTBEAT = new Event(-1, null);
+
+    @Autowired
+    private DataTransferCompletionRegistry completionRegistry;
+
+    @Value("${data-transfers.subscriptions.buffer-size:1000}")
+    private int bufferSize;
+
+    @Value("${data-transfers.subscriptions.max-pending:1000}")
+    private int maxPending;
+
+    @Value("${data-transfers.subscriptions.sse-timeout-ms:1800000}")
+    private long sseTimeoutMs;
+
+    @Value("${data-transfers.subscriptions.heartbeat-ms:15000}")
+    private long heartbeatMs;
+
+    private final Object lock = new Object();
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final List<PollWaiter> pollWaiters = new ArrayList<>();
+    private final ScheduledExecutorService heartbeats;
+    private final ExecutorService senders =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("data-transfer-events-", 1).factory());
+
+    private Event[] recent;
+    private long sequence;
+
+    public DataTransferSubscriptionService() {
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "data-transfer-heartbeats");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void init() {
+        recent = new Event[bufferSize];
+        completionRegistry.addListener(this::publish);
+        heartbeats.scheduleWithFixedDelay(this::sendHeartbeats, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (lock) {
+            subscribers.forEach(subscriber -> subscriber.emitter.complete());
+            subscribers.clear();
+        }
+        heartbeats.shutdown();
+        senders.shutdown();
+    }
+
+    /**
+     * Open an SSE stream of new transfers
+     * @param referenceId Only stream transfers for this reference ID, or all transfers when null
+     * @param lastEventId Sequence of the last event the client received (Last-Event-ID), to resume after a reconnect
+     */
+    public SseEmitter subscribe(String referenceId, Long lastEventId) {
+        return subscribe(referenceId, lastEventId, new SseEmitter(sseTimeoutMs));
+    }
+
+    SseEmitter subscribe(String referenceId, Long lastEventId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(referenceId, emitter);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> remove(subscriber));
+
+        synchronized (lock) {
+            if (lastEventId != null) {
+                for (Event event : eventsAfter(referenceId, lastEventId)) {
+                    if (!subscriber.enqueue(event)) {
+                        return emitter;
+                    }
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        return emitter;
+    }
+
+    /**
+     * Wait for transfers newer than a cursor
+     * @param referenceId Only return transfers for this reference ID, or all transfers when null
+     * @param after Cursor from the previous poll; when null, only transfers saved from now on are returned
+     * @param timeoutMs How long to wait when there is nothing new; the result is then empty
+     */
+    public CompletableFuture<Batch> poll(String referenceId, Long after, long timeoutMs) {
+        CompletableFuture<Batch> result = new CompletableFuture<>();
+        PollWaiter waiter = new PollWaiter(referenceId, result);
+        synchronized (lock) {
+            if (after != null) {
+                List<Event> events = eventsAfter(referenceId, after);
+                if (!events.isEmpty()) {
+                    result.complete(toBatch(events));
+                    return result;
+                }
+            }
+            pollWaiters.add(waiter);
+        }
+
+        CompletableFuture.delayedExecutor(timeoutMs, TimeUnit.MILLISECONDS).execute(() -> {
+            long cursor;
+            synchronized (lock) {
+                pollWaiters.remove(waiter);
+                cursor = sequence;
+            }
+            result.complete(new Batch(List.of(), cursor));
+        });
+        return result;
+    }
+
+    /**
+     * Number of open SSE streams
+     */
+    public int getSubscriberCount() {
+        synchronized (lock) {
+            return subscribers.size();
+        }
+    }
+
+    private void publish(DataTransfer transfer) {
+        List<PollWaiter> ready = new ArrayList<>();
+        Event event;
+        synchronized (lock) {
+            event = new Event(++sequence, transfer);
+            recent[(int) (event.sequence % recent.length)] = event;
+            // Enqueued under the lock so every subscriber sees events in sequence order
+            subscribers.removeIf(subscriber ->
+                    matches(subscriber.referenceId, transfer) && !subscriber.enqueue(event));
+            pollWaiters.removeIf(waiter -> matches(waiter.referenceId, transfer) && ready.add(waiter));
+        }
+        Batch batch = toBatch(List.of(event));
+        ready.forEach(waiter -> waiter.result.complete(batch));
+    }
+
+    /**
+     * Buffered events after a cursor, oldest first. Must be called holding the lock.
+     */
+    private List<Event> eventsAfter(String referenceId, long after) {
+        // A cursor from before a restart is ahead of the sequence; start from the current position
+        long from = Math.max(after, sequence - recent.length) + 1;
+        List<Event> events = new ArrayList<>();
+        for (long seq = from; seq <= sequence; seq++) {
+            Event event = recent[(int) (seq % recent.length)];
+            if (event != null && event.sequence == seq && matches(referenceId, event.transfer)) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    private void sendHeartbeats() {
+        synchronized (lock) {
+            subscribers.removeIf(subscriber -> !subscriber.enqueue(HEARTBEAT));
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        synchronized (lock) {
+            subscribers.remove(subscriber);
+        }
+    }
+
+    private static boolean matches(String referenceId, DataTransfer transfer) {
+        return referenceId == null || referenceId.equals(transfer.getReferenceId());
+    }
+
+    private static Batch toBatch(List<Event> events) {
+        List<DataTransfer> transfers = events.stream().map(Event::transfer).toList();
+        return new Batch(transfers, events.get(events.size() - 1).sequence);
+    }
+
+    /**
+     * An SSE stream with its own queue, drained by at most one virtual thread at a time
+     */
+    private final class Subscriber {
+
+        private final String referenceId;
+        private final SseEmitter emitter;
+        private final Queue<Event> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscriber(String referenceId, SseEmitter emitter) {
+            this.referenceId = referenceId;
+            this.emitter = emitter;
+        }
+
+        /**
+         * Queue an event for sending. Called holding the lock.
+         * @return false if the subscriber is disconnected and should be removed
+         */
+        boolean enqueue(Event event) {
+            if (closed.get()) {
+                return false;
+            }
+            if (pendingCount.incrementAndGet() > maxPending) {
+                // Too slow to keep up; the client can reconnect with Last-Event-ID. Completed off the lock,
+                // as completing may call back into remove().
+                if (closed.compareAndSet(false, true)) {
+                    pending.clear();
+                    senders.execute(emitter::complete);
+                }
+                return false;
+            }
+            pending.add(event);
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+            return true;
+        }
+
+        private void drain() {
+            Event event;
+            while ((event = pending.poll()) != null) {
+                pendingCount.decrementAndGet();
+                try {
+                    if (event == HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment("keep-alive"));
+                    } else {
+                        emitter.send(SseEmitter.event()
+                                .id(String.valueOf(event.sequence))
+                                .name("data-transfer")
+                                .data(event.transfer));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // Client went away or the emitter was already completed
+                    closed.set(true);
+                    remove(this);
+                    pending.clear();
+                    return;
+                }
+            }
+            draining.set(false);
+            // Pick up anything enqueued between the last poll and releasing the flag
+            if (!pending.isEmpty() && draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+    }
+}
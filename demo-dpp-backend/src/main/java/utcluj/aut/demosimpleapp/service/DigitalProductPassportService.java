@@ -1,208 +1,683 @@
 package utcluj.aut.demosimpleapp.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import utcluj.aut.demosimpleapp.model.DigitalProductPassport;
 import utcluj.aut.demosimpleapp.model.RepairEntry;
+import utcluj.aut.demosimpleapp.model.StoredFile;
 import utcluj.aut.demosimpleapp.repository.DigitalProductPassportRepository;
-import utcluj.aut.demosimpleapp.util.EncryptionUtil;
+import utcluj.aut.demosimpleapp.repository.DigitalProductPassportSpecifications;
+import utcluj.aut.demosimpleapp.repository.PassportSummary;
+import utcluj.aut.demosimpleapp.repository.RepairEntryRepository;
+import utcluj.aut.demosimpleapp.repository.StoredFileRepository;
+import utcluj.aut.demosimpleapp.util.BlobStore;
+import utcluj.aut.demosimpleapp.util.ChunkedEncryptionFormat;
+import utcluj.aut.demosimpleapp.util.StoredContentFormat;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Passport lookups by ID and serial number are served from a bounded in-process cache (passports.cache.*),
+ * since the same passports are read for every EDC transfer. Every write through this service invalidates the
+ * passport after it has been saved; writes load the passport from the database, never from the cache, so cached
+ * instances are only read. Hit/miss statistics are at /actuator/metrics/cache.gets?tag=cache:passports.
+ */
 @Service
 public class DigitalProductPassportService {
 
+    // Passport attributes that can be selected with fields=, in response order
+    private static final Map<String, Function<DigitalProductPassport, Object>> PASSPORT_FIELDS = new LinkedHashMap<>();
+
+    static {
+        PASSPORT_FIELDS.put("id", DigitalProductPassport::getId);
+        PASSPORT_FIELDS.put("productName", DigitalProductPassport::getProductName);
+        PASSPORT_FIELDS.put("manufacturer", DigitalProductPassport::getManufacturer);
+        PASSPORT_FIELDS.put("serialNumber", DigitalProductPassport::getSerialNumber);
+        PASSPORT_FIELDS.put("manufacturingDate", DigitalProductPassport::getManufacturingDate);
+        PASSPORT_FIELDS.put("productType", DigitalProductPassport::getProductType);
+        PASSPORT_FIELDS.put("modelNumber", DigitalProductPassport::getModelNumber);
+        PASSPORT_FIELDS.put("csvFileName", DigitalProductPassport::getCsvFileName);
+        PASSPORT_FIELDS.put("encrypted", DigitalProductPassport::isEncrypted);
+        PASSPORT_FIELDS.put("version", DigitalProductPassport::getVersion);
+        PASSPORT_FIELDS.put("updatedAt", DigitalProductPassport::getUpdatedAt);
+        PASSPORT_FIELDS.put("repairHistory", DigitalProductPassport::getRepairHistory);
+    }
+
     @Autowired
     private DigitalProductPassportRepository passportRepository;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private StoredFileRepository storedFileRepository;
+
+    @Autowired
+    private RepairEntryRepository repairEntryRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UploadStorageService uploadStorageService;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Value("${passports.repairs.batch.max-size:1000}")
+    private int repairBatchMaxSize;
+
+    @Value("${passports.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${passports.cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    // Also bounds how long another instance's writes can go unnoticed
+    @Value("${passports.cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+
+    private Cache<Long, DigitalProductPassport> passportsById;
+
+    // Serial numbers are unique, and only change when a passport is created again under an existing ID; that drops
+    // the passport's entries here, and lookups also check the passport they resolve to still has the serial number
+    private Cache<String, Long> passportIdsBySerialNumber;
     
-    // Path to store uploaded files
-    private final Path uploadsDir;
-    
-    // Map to store original filenames to UUIDs
-    private Map<Long, String> passportToFileMap = new java.util.concurrent.ConcurrentHashMap<>();
-    
+    // Key for the CSV ETags; random per start when unset, so set it when several instances serve downloads
+    @Value("${passports.csv.etag-secret:}")
+    private String csvETagSecret;
+
+    private SecretKeySpec csvETagKey;
+
     // Whether to encrypt CSV files
     @Value("${encryption.csv.enabled:false}")
     private boolean encryptCsvEnabled;
 
-    public DigitalProductPassportService() {
-        // Create uploads directory if it doesn't exist
-        this.uploadsDir = Paths.get("uploads");
+    @PostConstruct
+    public void initCache() {
+        if (!cacheEnabled) {
+            return;
+        }
+        passportsById = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats()
+                .build();
+        passportIdsBySerialNumber = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, passportsById, "passports");
+        CaffeineCacheMetrics.monitor(meterRegistry, passportIdsBySerialNumber, "passport-serial-numbers");
+    }
+
+    @PostConstruct
+    public void initCsvETagKey() {
+        byte[] secret = new byte[32];
+        if (csvETagSecret.isEmpty()) {
+            new SecureRandom().nextBytes(secret);
+        } else {
+            secret = csvETagSecret.getBytes(StandardCharsets.UTF_8);
+        }
+        csvETagKey = new SecretKeySpec(secret, "HmacSHA256");
+    }
+
+    /**
+     * ETag of a passport's CSV file as sent with the given Content-Encoding (null when decompressed), or null
+     * if the file was uploaded without a content hash. It is a keyed hash of the content hash, so it does not
+     * tell whether a passport holds a known file.
+     */
+    public String csvETag(DigitalProductPassport passport, String contentEncoding) {
+        if (passport.getCsvSha256() == null) {
+            return null;
+        }
+        Mac mac;
         try {
-            if (!Files.exists(uploadsDir)) {
-                Files.createDirectories(uploadsDir);
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Could not create uploads directory", e);
+            mac = Mac.getInstance("HmacSHA256");
+            mac.init(csvETagKey);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
         }
+        byte[] tag = mac.doFinal(passport.getCsvSha256().getBytes(StandardCharsets.US_ASCII));
+        String value = HexFormat.of().formatHex(tag, 0, 16);
+        // Each representation gets its own ETag, since ranges of one do not apply to the other
+        return "\"" + (contentEncoding == null ? value : value + "-" + contentEncoding) + "\"";
     }
 
+    /**
+     * Get a passport with its repair history. The returned instance may be shared with other callers
+     * and must not be modified.
+     */
     public DigitalProductPassport getPassportById(Long id) {
-        return passportRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Passport not found with id: " + id));
+        if (passportsById == null) {
+            return loadPassport(id);
+        }
+        // Concurrent misses for the same ID wait for a single load; an invalidation during the load waits for
+        // it too and then removes the result, so a write cannot be overtaken by a stale load
+        return passportsById.get(id, this::loadPassport);
     }
 
+    /**
+     * Get a passport with its repair history. The returned instance may be shared with other callers
+     * and must not be modified.
+     */
     public DigitalProductPassport getPassportBySerialNumber(String serialNumber) {
-        DigitalProductPassport passport = passportRepository.findBySerialNumber(serialNumber);
-        if (passport == null) {
-            throw new RuntimeException("Passport not found with serial number: " + serialNumber);
+        if (passportIdsBySerialNumber == null) {
+            return loadPassportBySerialNumber(serialNumber);
         }
+        Long id = passportIdsBySerialNumber.getIfPresent(serialNumber);
+        if (id != null) {
+            DigitalProductPassport passport = getPassportById(id);
+            if (serialNumber.equals(passport.getSerialNumber())) {
+                return passport;
+            }
+            passportIdsBySerialNumber.invalidate(serialNumber);
+        }
+        // Not added to the ID cache: unlike a load through it, this load could finish after a concurrent
+        // write's invalidation and would then stay stale
+        DigitalProductPassport passport = loadPassportBySerialNumber(serialNumber);
+        passportIdsBySerialNumber.put(serialNumber, passport.getId());
         return passport;
     }
 
-    public List<DigitalProductPassport> getAllPassports() {
-        return passportRepository.findAll();
+    private DigitalProductPassport loadPassport(Long id) {
+        return passportRepository.findWithRepairHistoryById(id)
+                .orElseThrow(() -> new RuntimeException("Passport not found with id: " + id));
+    }
+
+    private DigitalProductPassport loadPassportBySerialNumber(String serialNumber) {
+        return passportRepository.findWithRepairHistoryBySerialNumber(serialNumber)
+                .orElseThrow(() -> new RuntimeException("Passport not found with serial number: " + serialNumber));
+    }
+
+    /**
+     * Drop a passport from the cache; call after the change has been committed
+     */
+    public void evictPassport(Long id) {
+        if (passportsById != null && id != null) {
+            passportsById.invalidate(id);
+        }
+    }
+
+    /**
+     * Get one page of passports matching the filter, with the total count
+     */
+    public Page<DigitalProductPassport> getPassports(Specification<DigitalProductPassport> filter, Pageable pageable) {
+        return passportRepository.findAll(filter, pageable);
+    }
+
+    /**
+     * Get passports matching the filter with an ID greater than afterId, in ID order (keyset pagination)
+     */
+    public List<DigitalProductPassport> getPassportsAfter(Specification<DigitalProductPassport> filter,
+                                                         Long afterId, int limit) {
+        return passportRepository.findBy(filter.and(DigitalProductPassportSpecifications.idGreaterThan(afterId)),
+                query -> query.sortBy(Sort.by("id")).limit(limit).all());
+    }
+
+    /**
+     * Parse a sparse fieldset (fields=productName,serialNumber). The ID is always included, since clients
+     * need it to address the passport and keyset paging needs it for the cursor.
+     * @return The requested fields in response order, or null for whole passports if fields is null or blank
+     * @throws IllegalArgumentException for unknown field names
+     */
+    public List<String> parseFields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> requested = new HashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!name.isEmpty() && !PASSPORT_FIELDS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown field " + name + "; allowed fields are "
+                        + PASSPORT_FIELDS.keySet());
+            }
+            requested.add(name);
+        }
+        return PASSPORT_FIELDS.keySet().stream()
+                .filter(name -> name.equals("id") || requested.contains(name))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Copy the given fields of a passport (e.g. a cached one) into a response map
+     */
+    public Map<String, Object> selectFields(DigitalProductPassport passport, List<String> fields) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (String field : fields) {
+            row.put(field, PASSPORT_FIELDS.get(field).apply(passport));
+        }
+        return row;
+    }
+
+    /**
+     * Get one page of passports matching the filter, reading only the columns of the given fields
+     * (plus one query for the repair entries if repairHistory is among them)
+     */
+    public Page<Map<String, Object>> getPassportFields(Specification<DigitalProductPassport> filter,
+                                                       List<String> fields, Pageable pageable) {
+        List<Map<String, Object>> rows = passportRepository.findFields(filter, columnsOf(fields), pageable);
+        addRepairHistory(rows, fields);
+        return PageableExecutionUtils.getPage(rows, pageable, () -> passportRepository.count(filter));
+    }
+
+    /**
+     * Keyset variant of {@link #getPassportFields}: passports with an ID greater than afterId, in ID order
+     */
+    public List<Map<String, Object>> getPassportFieldsAfter(Specification<DigitalProductPassport> filter,
+                                                            List<String> fields, Long afterId, int limit) {
+        List<Map<String, Object>> rows = passportRepository.findFields(
+                filter.and(DigitalProductPassportSpecifications.idGreaterThan(afterId)), columnsOf(fields),
+                PageRequest.of(0, limit, Sort.by("id")));
+        addRepairHistory(rows, fields);
+        return rows;
+    }
+
+    /**
+     * Get one page of passport summaries, reading only the summary columns
+     */
+    public Page<PassportSummary> getPassportSummaries(Specification<DigitalProductPassport> filter,
+                                                      Pageable pageable) {
+        List<PassportSummary> summaries = passportRepository.findProjectedBy(filter, PassportSummary.class, pageable);
+        return PageableExecutionUtils.getPage(summaries, pageable, () -> passportRepository.count(filter));
+    }
+
+    /**
+     * Keyset variant of {@link #getPassportSummaries}
+     */
+    public List<PassportSummary> getPassportSummariesAfter(Specification<DigitalProductPassport> filter,
+                                                           Long afterId, int limit) {
+        return passportRepository.findProjectedBy(
+                filter.and(DigitalProductPassportSpecifications.idGreaterThan(afterId)), PassportSummary.class,
+                PageRequest.of(0, limit, Sort.by("id")));
+    }
+
+    private static List<String> columnsOf(List<String> fields) {
+        return fields.stream().filter(field -> !field.equals("repairHistory")).collect(Collectors.toList());
+    }
+
+    private void addRepairHistory(List<Map<String, Object>> rows, List<String> fields) {
+        if (!fields.contains("repairHistory") || rows.isEmpty()) {
+            return;
+        }
+        Map<Long, Map<String, Object>> rowsById = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            row.put("repairHistory", new ArrayList<RepairEntry>());
+            rowsById.put((Long) row.get("id"), row);
+        }
+        for (RepairEntry repair : repairEntryRepository.findByPassportIds(rowsById.keySet())) {
+            // The passport is an uninitialized proxy; reading its ID does not load it
+            @SuppressWarnings("unchecked")
+            List<RepairEntry> history = (List<RepairEntry>) rowsById.get(repair.getPassport().getId())
+                    .get("repairHistory");
+            history.add(repair);
+        }
     }
 
     public DigitalProductPassport createPassport(DigitalProductPassport passport) {
-        return passportRepository.save(passport);
+        Long suppliedId = passport.getId();
+        DigitalProductPassport saved = passportRepository.save(passport);
+        // A client may have supplied the ID of an existing passport, possibly with another serial number
+        evictPassport(saved.getId());
+        if (suppliedId != null && passportIdsBySerialNumber != null) {
+            passportIdsBySerialNumber.asMap().values().removeIf(suppliedId::equals);
+        }
+        return saved;
     }
 
+    /**
+     * Add a repair entry to a passport. The entry is inserted directly, without loading the passport
+     * or its repair history.
+     */
     public RepairEntry addRepairEntry(Long passportId, RepairEntry repairEntry) {
-        DigitalProductPassport passport = getPassportById(passportId);
-        repairEntry.setPassport(passport);
-        passport.getRepairHistory().add(repairEntry);
-        passportRepository.save(passport);
-        return repairEntry;
+        RepairEntry saved = transactionTemplate.execute(status -> {
+            if (passportRepository.markChanged(List.of(passportId), LocalDateTime.now()) == 0) {
+                throw new RuntimeException("Passport not found with id: " + passportId);
+            }
+            return insertRepairEntry(passportId, repairEntry);
+        });
+        evictPassport(passportId);
+        return saved;
+    }
+
+    /**
+     * Repair entries to add to one passport
+     */
+    public record RepairBatch(Long passportId, List<RepairEntry> repairs) {
+    }
+
+    /**
+     * Add repair entries to several passports in one transaction, with the inserts grouped into JDBC batches
+     * @return The saved entries, in request order
+     * @throws IllegalArgumentException if there are more than passports.repairs.batch.max-size entries,
+     * a passport ID or entry is missing, or a passport does not exist; nothing is saved then
+     */
+    public List<RepairEntry> addRepairEntries(List<RepairBatch> batches) {
+        Set<Long> passportIds = new LinkedHashSet<>();
+        int count = 0;
+        for (RepairBatch batch : batches) {
+            if (batch == null || batch.passportId() == null || batch.repairs() == null
+                    || batch.repairs().stream().anyMatch(Objects::isNull)) {
+                throw new IllegalArgumentException("Each item needs a passportId and a list of repairs");
+            }
+            if (!batch.repairs().isEmpty()) {
+                passportIds.add(batch.passportId());
+            }
+            count += batch.repairs().size();
+        }
+        if (count > repairBatchMaxSize) {
+            throw new IllegalArgumentException("At most " + repairBatchMaxSize + " repair entries can be added at once");
+        }
+        if (passportIds.isEmpty()) {
+            return List.of();
+        }
+
+        List<RepairEntry> entries = new ArrayList<>(count);
+        for (RepairBatch batch : batches) {
+            batch.repairs().forEach(repair -> repair.setId(null));
+            entries.addAll(batch.repairs());
+        }
+        List<RepairEntry> saved = transactionTemplate.execute(status -> {
+            if (passportRepository.markChanged(passportIds, LocalDateTime.now()) != passportIds.size()) {
+                Set<Long> missing = new LinkedHashSet<>(passportIds);
+                missing.removeAll(passportRepository.findExistingIds(passportIds));
+                throw new IllegalArgumentException("Passports not found: " + missing);
+            }
+            for (RepairBatch batch : batches) {
+                DigitalProductPassport passport = passportRepository.getReferenceById(batch.passportId());
+                batch.repairs().forEach(repair -> repair.setPassport(passport));
+            }
+            return repairEntryRepository.saveAll(entries);
+        });
+        passportIds.forEach(this::evictPassport);
+        return saved;
+    }
+
+    /**
+     * Page through a passport's repair history
+     */
+    public Page<RepairEntry> getRepairHistory(Long passportId, Pageable pageable) {
+        return repairEntryRepository.findByPassportId(passportId, pageable);
+    }
+
+    public boolean passportExists(Long passportId) {
+        return passportRepository.existsById(passportId);
+    }
+
+    /**
+     * Insert a repair entry pointing to a passport proxy; the passport itself is not loaded.
+     * Repair entries own the relationship, so callers mark the passport as changed to give it a new version.
+     */
+    private RepairEntry insertRepairEntry(Long passportId, RepairEntry repairEntry) {
+        repairEntry.setId(null);
+        repairEntry.setPassport(passportRepository.getReferenceById(passportId));
+        return repairEntryRepository.save(repairEntry);
     }
     
     // New method to update CSV file name
     public DigitalProductPassport updateCsvFileName(Long passportId, String csvFileName) {
-        DigitalProductPassport passport = getPassportById(passportId);
+        DigitalProductPassport passport = loadPassport(passportId);
         passport.setCsvFileName(csvFileName);
-        return passportRepository.save(passport);
+        DigitalProductPassport saved = passportRepository.save(passport);
+        evictPassport(passportId);
+        return saved;
     }
 
     // Method to handle CSV file upload
     public DigitalProductPassport uploadCsvFile(Long passportId, MultipartFile file, boolean encryptFile) throws IOException {
-        DigitalProductPassport passport = getPassportById(passportId);
+        DigitalProductPassport passport = loadPassport(passportId);
         
         if (file.isEmpty()) {
             throw new IllegalArgumentException("Failed to store empty file");
         }
         
-        // Generate a unique filename to prevent overwriting existing files
+        // Identical content uploaded before (for this or any other passport) is stored only once
         String originalFilename = file.getOriginalFilename();
-        String fileExtension = originalFilename != null ? 
-                originalFilename.substring(originalFilename.lastIndexOf('.')) : ".csv";
-        String newFilename = UUID.randomUUID().toString() + fileExtension;
-        
-        // Store the file in the uploads directory
-        Path destinationFile = uploadsDir.resolve(
-                Paths.get(newFilename))
-                .normalize().toAbsolutePath();
+        UploadStorageService.StoredContent content = uploadStorageService.store(file.getInputStream(), encryptFile);
+
+        // Mark file as encrypted by adding a flag to the passport
+        passport.setEncrypted(encryptFile);
+        passport.setCsvSha256(content.sha256());
         
-        // Make sure the destination is inside the uploads directory (security check)
-        if (!destinationFile.getParent().equals(uploadsDir.toAbsolutePath())) {
-            throw new SecurityException("Cannot store file outside of uploads directory");
+        // Update the passport with the new file name
+        passport.setCsvFileName(originalFilename != null ? originalFilename : "upload.csv");
+
+        // Record where the file is stored together with the passport change, so a download never sees one
+        // without the other
+        String[] replacedKey = new String[1];
+        DigitalProductPassport saved;
+        try {
+            saved = transactionTemplate.execute(status -> {
+                StoredFile storedFile = storedFileRepository.findByPassportId(passportId).orElseGet(StoredFile::new);
+                replacedKey[0] = storedFile.getStorageKey();
+                storedFile.setPassportId(passportId);
+                storedFile.setStorageKey(content.key());
+                storedFile.setOriginalFilename(originalFilename);
+                storedFile.setStoredSize(content.storedSize());
+                storedFile.setSha256(content.sha256());
+                storedFile.setEncrypted(content.encrypted());
+                storedFile.setCreatedAt(LocalDateTime.now());
+                storedFileRepository.save(storedFile);
+                if (replacedKey[0] != null) {
+                    uploadStorageService.release(replacedKey[0]);
+                }
+                return passportRepository.save(passport);
+            });
+        } catch (RuntimeException e) {
+            transactionTemplate.executeWithoutResult(status -> uploadStorageService.release(content.key()));
+            uploadStorageService.deleteIfUnreferenced(content.key());
+            throw e;
         }
-        
-        // Check if we need to encrypt the file 
-        if (encryptFile) {
-            // Read file content
-            String fileContent = new String(file.getBytes(), StandardCharsets.UTF_8);
-            
-            // Encrypt the content
-            String encryptedContent = EncryptionUtil.encrypt(fileContent);
-            
-            // Write encrypted content to file
-            Files.write(destinationFile, encryptedContent.getBytes(StandardCharsets.UTF_8));
-            
-            // Mark file as encrypted by adding a flag to the passport
-            passport.setEncrypted(true);
-        } else {
-            // Save the file as-is
-            Files.copy(file.getInputStream(), destinationFile, StandardCopyOption.REPLACE_EXISTING);
-            passport.setEncrypted(false);
+        evictPassport(passportId);
+
+        // The previous upload may no longer be referenced
+        if (replacedKey[0] != null) {
+            uploadStorageService.deleteIfUnreferenced(replacedKey[0]);
         }
-        
-        // Store the mapping between passport ID and UUID filename
-        passportToFileMap.put(passport.getId(), newFilename);
-        
-        // Update the passport with the new file name
-        passport.setCsvFileName(originalFilename != null ? originalFilename : newFilename);
-        return passportRepository.save(passport);
+        return saved;
     }
 
-    // Method to load the CSV file as a resource 
-    public Resource loadCsvFileAsResource(Long passportId) throws MalformedURLException, IOException {
-        DigitalProductPassport passport = getPassportById(passportId);
+    /**
+     * Open the CSV file of a passport for streaming to a client
+     * @param acceptedEncodings Content-codings the client accepts (e.g. gzip); a file stored compressed with
+     *                          one of them is returned as stored instead of being decompressed
+     */
+    public CsvContent openCsvContent(Long passportId, Set<String> acceptedEncodings) throws IOException {
+        StoredFile storedFile = storedFileRepository.findByPassportId(passportId)
+                .orElseThrow(() -> new RuntimeException("File not found for passport: " + passportId));
+        String key = storedFile.getStorageKey();
         
-        // Find the UUID filename for this passport's CSV file
-        String uuidFilename = findFileForPassport(passport);
-        
-        if (uuidFilename == null) {
-            throw new RuntimeException("File not found for passport: " + passportId);
+        long storedSize = blobStore.size(key);
+        if (storedSize < 0) {
+            throw new RuntimeException("File not found: " + key);
+        }
+        byte[] head;
+        try (InputStream in = blobStore.open(key, 0, Math.min(storedSize,
+                StoredContentFormat.HEADER_LENGTH + ChunkedEncryptionFormat.MAX_HEADER_LENGTH))) {
+            head = in.readAllBytes();
         }
-        
-        Path filePath = uploadsDir.resolve(uuidFilename).normalize();
-        
-        // Check if the file is encrypted and needs decryption
-        if (passport.isEncrypted()) {
-            // Read the encrypted content
-            String encryptedContent = new String(Files.readAllBytes(filePath), StandardCharsets.UTF_8);
 
-            // Decrypt the content
-            String decryptedContent = EncryptionUtil.decrypt(encryptedContent);
+        // Files stored before compression was added have no header and are never compressed
+        StoredContentFormat.Header format = StoredContentFormat.readHeader(new ByteArrayInputStream(head));
+        int payloadOffset = format != null ? StoredContentFormat.HEADER_LENGTH : 0;
+        boolean encrypted = format != null ? format.encrypted() : storedFile.isEncrypted();
+        StoredContentFormat.Codec codec = format != null ? format.codec() : StoredContentFormat.Codec.NONE;
 
-            // Return as a resource
-            return new org.springframework.core.io.InputStreamResource(
-                new ByteArrayInputStream(decryptedContent.getBytes(StandardCharsets.UTF_8)));
-        } else {
-            // Return the file as-is
-            Resource resource = new UrlResource(filePath.toUri());
-            
-            if (resource.exists()) {
-                return resource;
+        // The stored bytes after decryption, still compressed
+        StoredCsvContent payload;
+        if (encrypted) {
+            if (ChunkedEncryptionFormat.isChunkedFormat(
+                    new ByteArrayInputStream(head, payloadOffset, head.length - payloadOffset))) {
+                long length = ChunkedEncryptionFormat.plaintextLength(
+                        new ByteArrayInputStream(head, payloadOffset, head.length - payloadOffset),
+                        storedSize - payloadOffset);
+                // Only the chunks covering the requested range are read and decrypted
+                payload = new StoredCsvContent(length, null, (offset, count) -> encryptionService.decryptingStream(
+                        (start, size) -> blobStore.open(key, payloadOffset + start, size), offset));
+            } else if (format == null) {
+                // Legacy files are a single Base64-encoded ciphertext and have to be decrypted as a whole
+                String encryptedContent;
+                try (InputStream in = blobStore.open(key, 0, -1)) {
+                    encryptedContent = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
+                byte[] decryptedContent = encryptionService.decrypt(encryptedContent).getBytes(StandardCharsets.UTF_8);
+                payload = new StoredCsvContent(decryptedContent.length, null,
+                        (offset, count) -> new ByteArrayInputStream(decryptedContent, (int) offset, (int) count));
             } else {
-                throw new RuntimeException("File not found: " + uuidFilename);
+                throw new IOException("Encrypted content of " + key + " is not in the chunked format");
+            }
+        } else {
+            payload = new StoredCsvContent(storedSize - payloadOffset, null,
+                    (offset, count) -> blobStore.open(key, payloadOffset + offset, count),
+                    blobStore.localPath(key), payloadOffset);
+        }
+
+        if (codec == StoredContentFormat.Codec.NONE) {
+            return payload;
+        }
+        if (acceptedEncodings.contains(codec.getContentEncoding())) {
+            // Passed through as stored; the client decompresses it
+            return payload.withContentEncoding(codec.getContentEncoding());
+        }
+        // A compressed stream cannot be entered in the middle, so ranges are decompressed from the start
+        return new StoredCsvContent(format.contentLength(), null, (offset, count) -> {
+            InputStream in = codec.decompress(payload.source.open(0, -1));
+            try {
+                in.skipNBytes(offset);
+                return in;
+            } catch (IOException | RuntimeException e) {
+                in.close();
+                throw e;
             }
-       }
+        });
     }
-    
-    // Helper method to find the UUID filename for a passport
-    private String findFileForPassport(DigitalProductPassport passport) {
-        // First check if we have it in our map
-        String filename = passportToFileMap.get(passport.getId());
-        if (filename != null) {
-            return filename;
+
+    /**
+     * Opens a byte range of stored content
+     */
+    @FunctionalInterface
+    private interface RangeSource {
+
+        /**
+         * @param count Number of bytes the caller reads, or -1 for the rest
+         */
+        InputStream open(long offset, long count) throws IOException;
+    }
+
+    private static final class StoredCsvContent implements CsvContent {
+
+        private final long length;
+        private final String contentEncoding;
+        private final RangeSource source;
+        // Set when the content is a plain region of a local file, which is handed to the channel so the JDK can
+        // avoid copying through the heap
+        private final Path file;
+        private final long fileOffset;
+
+        StoredCsvContent(long length, String contentEncoding, RangeSource source) {
+            this(length, contentEncoding, source, null, 0);
         }
-        
-        // Otherwise, we need to search for files that might match
-        try {
-            // List all files in the uploads directory
-            List<Path> files = Files.list(uploadsDir).toList();
-            
-            // If there's only one file and no mappings, assume it's for this passport
-            if (passport.getCsvFileName() != null && !passport.getCsvFileName().isEmpty()) {
-                // Look for any UUID files
-                for (Path file : files) {
-                    String fileName = file.getFileName().toString();
-                    if (fileName.contains("-") && fileName.endsWith(".csv")) {
-                        // Store in map for future reference
-                        passportToFileMap.put(passport.getId(), fileName);
-                        return fileName;
+
+        StoredCsvContent(long length, String contentEncoding, RangeSource source, Path file, long fileOffset) {
+            this.length = length;
+            this.contentEncoding = contentEncoding;
+            this.source = source;
+            this.file = file;
+            this.fileOffset = fileOffset;
+        }
+
+        StoredCsvContent withContentEncoding(String contentEncoding) {
+            return new StoredCsvContent(length, contentEncoding, source, file, fileOffset);
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public String contentEncoding() {
+            return contentEncoding;
+        }
+
+        @Override
+        public void writeTo(OutputStream out, long offset, long count) throws IOException {
+            if (file == null) {
+                try (InputStream in = source.open(offset, count)) {
+                    copy(in, out, count);
+                }
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = fileOffset + offset;
+                long end = position + count;
+                while (position < end) {
+                    long transferred = channel.transferTo(position, end - position, target);
+                    if (transferred <= 0) {
+                        throw new IOException("Unexpected end of file: " + file.getFileName());
                     }
+                    position += transferred;
                 }
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-        
-        return null;
     }
-}
\ No newline at end of file
+    
+    private static void copy(InputStream in, OutputStream out, long count) throws IOException {
+        byte[] buffer = new byte[8192];
+        long remaining = count;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new IOException("Unexpected end of file content");
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package utcluj.aut.demosimpleapp.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import utcluj.aut.demosimpleapp.config.EdcTransferProfileProperties;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Transfer profiles (connector, contract agreement and data sink) loaded from the edc.profiles.* properties.
+ * The request body of each profile is serialized once at startup with a marker in place of the ID, so
+ * initiating a transfer only splices the JSON-escaped ID into the template.
+ */
+@Service
+public class EdcTransferProfileRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(EdcTransferProfileRegistry.class);
+
+    private static final String TRANSFERS_PATH = "/api/management/wrapper/ui/pages/contract-agreement-page/transfers";
+    private static final String ID_MARKER = "__EDC_TRANSFER_ID__";
+
+    @Autowired
+    private EdcTransferProfileProperties properties;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, TransferProfile> profiles = new LinkedHashMap<>();
+    private TransferProfile defaultProfile;
+
+    @PostConstruct
+    public void init() {
+        if (properties.getProfiles().isEmpty()) {
+            throw new IllegalStateException("No EDC transfer profiles configured (edc.profiles.<name>.*)");
+        }
+        properties.getProfiles().forEach((name, profile) -> profiles.put(name, compile(name, profile)));
+        defaultProfile = profiles.get(properties.getDefaultProfile());
+        if (defaultProfile == null) {
+            throw new IllegalStateException("Default EDC transfer profile '" + properties.getDefaultProfile()
+                    + "' is not configured");
+        }
+        logger.info("EDC transfer profiles: {} (default: {})", profiles.keySet(), defaultProfile.getName());
+    }
+
+    public Collection<TransferProfile> getProfiles() {
+        return profiles.values();
+    }
+
+    /**
+     * Pick the profile for a transfer: the named profile, otherwise the first profile whose id-pattern
+     * matches the ID, otherwise the default profile
+     * @param profileName Profile requested by the client, or null
+     * @throws IllegalArgumentException if the named profile does not exist
+     */
+    public TransferProfile resolve(String profileName, String id) {
+        if (profileName != null) {
+            TransferProfile profile = profiles.get(profileName);
+            if (profile == null) {
+                throw new IllegalArgumentException("Unknown EDC transfer profile: " + profileName);
+            }
+            return profile;
+        }
+        for (TransferProfile profile : profiles.values()) {
+            if (profile.idPattern != null && profile.idPattern.matcher(id).matches()) {
+                return profile;
+            }
+        }
+        return defaultProfile;
+    }
+
+    private TransferProfile compile(String name, EdcTransferProfileProperties.Profile profile) {
+        require(name, "connector-url", profile.getConnectorUrl());
+        require(name, "contract-agreement-id", profile.getContractAgreementId());
+        require(name, "data-sink-url", profile.getDataSinkUrl());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (profile.getApiKey() != null) {
+            headers.set("X-Api-Key", profile.getApiKey());
+        }
+
+        Map<String, Object> requestBody = new LinkedHashMap<>();
+        requestBody.put("contractAgreementId", profile.getContractAgreementId());
+
+        // Data sink properties
+        Map<String, String> dataSinkProperties = new LinkedHashMap<>();
+        dataSinkProperties.put("https://w3id.org/edc/v0.0.1/ns/type", "HttpData");
+        dataSinkProperties.put("https://w3id.org/edc/v0.0.1/ns/baseUrl", profile.getDataSinkUrl());
+        dataSinkProperties.put("https://w3id.org/edc/v0.0.1/ns/method", "POST");
+        dataSinkProperties.put("https://w3id.org/edc/v0.0.1/ns/queryParams", "");
+
+        // Transfer process properties
+        Map<String, String> transferProcessProperties = new LinkedHashMap<>();
+        transferProcessProperties.put("https://w3id.org/edc/v0.0.1/ns/method", "GET");
+        transferProcessProperties.put("https://w3id.org/edc/v0.0.1/ns/pathSegments", profile.getPathSegments());
+        transferProcessProperties.put("https://w3id.org/edc/v0.0.1/ns/queryParams", "id=" + ID_MARKER);
+
+        requestBody.put("dataSinkProperties", dataSinkProperties);
+        requestBody.put("transferProcessProperties", transferProcessProperties);
+
+        String template;
+        try {
+            template = objectMapper.writeValueAsString(requestBody);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to build request template for EDC transfer profile " + name, e);
+        }
+        int marker = template.indexOf(ID_MARKER);
+        if (marker < 0 || template.indexOf(ID_MARKER, marker + 1) >= 0) {
+            throw new IllegalStateException("EDC transfer profile " + name + " must not contain " + ID_MARKER);
+        }
+
+        return new TransferProfile(name, profile.getConnectorUrl(),
+                URI.create(stripTrailingSlash(profile.getConnectorUrl()) + TRANSFERS_PATH),
+                HttpHeaders.readOnlyHttpHeaders(headers),
+                template.substring(0, marker), template.substring(marker + ID_MARKER.length()),
+                profile.getIdPattern() != null && !profile.getIdPattern().isEmpty()
+                        ? Pattern.compile(profile.getIdPattern()) : null);
+    }
+
+    private static void require(String name, String property, String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalStateException("EDC transfer profile " + name + " needs " + property);
+        }
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    /**
+     * A compiled profile: the connector endpoint, fixed headers and the request body split around the ID
+     */
+    public static final class TransferProfile {
+
+        private final String name;
+        private final String connectorUrl;
+        private final URI endpoint;
+        private final HttpHeaders headers;
+        private final String bodyPrefix;
+        private final String bodySuffix;
+        private final Pattern idPattern;
+
+        private TransferProfile(String name, String connectorUrl, URI endpoint, HttpHeaders headers,
+                                String bodyPrefix, String bodySuffix, Pattern idPattern) {
+            this.name = name;
+            this.connectorUrl = connectorUrl;
+            this.endpoint = endpoint;
+            this.headers = headers;
+            this.bodyPrefix = bodyPrefix;
+            this.bodySuffix = bodySuffix;
+            this.idPattern = idPattern;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getConnectorUrl() {
+            return connectorUrl;
+        }
+
+        public URI getEndpoint() {
+            return endpoint;
+        }
+
+        /**
+         * The transfer request for an ID
+         */
+        public HttpEntity<String> request(String id) {
+            char[] escaped = JsonStringEncoder.getInstance().quoteAsString(id);
+            String body = new StringBuilder(bodyPrefix.length() + escaped.length + bodySuffix.length())
+                    .append(bodyPrefix).append(escaped).append(bodySuffix)
+                    .toString();
+            return new HttpEntity<>(body, headers);
+        }
+    }
+}
@@ -1,50 +1,111 @@
 package utcluj.aut.demosimpleapp.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import utcluj.aut.demosimpleapp.model.DataTransfer;
+import utcluj.aut.demosimpleapp.util.BoundedExecutor;
 
-import java.util.HashMap;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
- * Responsible for the initiation of data transfers with the EDC connector. Most of the parts are hardcoded, actually the only part that is not hardcoded is the id of the DPP which is passed as a parameter.
+ * Responsible for the initiation of data transfers with the EDC connector. The connector, contract agreement and
+ * data sink come from a transfer profile (see {@link EdcTransferProfileRegistry}); the id of the DPP is passed as a parameter.
  * This service is specially created for testing DPP transfers with EDC connector.
- * This demo is working with a hardcoded contract agreement ID.
  * The offer is configured on the provider side in a particular way, so the id is accepted as query parameter.
  *
- * In response to the transfer request, the EDC connector will send a POST request to the DATA_SINK_BASE_URL with the data as json
+ * In response to the transfer request, the EDC connector will send a POST request to the profile's data sink URL with the data as json
  *
  * NOTE: Data transfer is initiated by using Sovity wrapper API and not EDC API directly.
  */
 @Service
 public class EdcTransferService {
 
-    @Value("${edc.connector.url:http://localhost:22002}")
-    private String edcConnectorUrl;
-    
-    @Value("${edc.api.key:ApiKeyDefaultValue}")
-    private String edcApiKey;
-    private static final String CONTRACT_AGREEMENT_ID = "cXVlcnktMw==:cXVlcnktMw==:MDE5NjZiZGUtNjE1Yy03YWE4LTlkZTYtYjFkYTAxNTBiOTU2";
-    //private static final String DATA_SINK_BASE_URL = "http://192.168.100.2:8081/log";
-    private static final String DATA_SINK_BASE_URL = "http://192.168.100.2:8081/api/data-transfers/json-only";
-    private static final int WAIT_SECONDS = 5;
+    // How long an initiated transfer waits for the provider to push the data
+    @Value("${edc.transfer.timeout-ms:20000}")
+    private long transferTimeoutMs;
+
+    // Blocking EDC and database work runs on virtual threads when Spring Boot's virtual thread mode is enabled
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${edc.transfer.max-concurrency:64}")
+    private int maxConcurrency;
+
+    @Value("${edc.transfer.max-waiting:1000}")
+    private int maxWaiting;
+
+    // Retries of connector calls that were never sent, or answered with 429 or 503, with exponential backoff and jitter
+    @Value("${edc.http.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${edc.http.retry-backoff-ms:200}")
+    private long retryBackoffMs;
+
+    @Value("${edc.http.retry-max-backoff-ms:5000}")
+    private long retryMaxBackoffMs;
 
-    private final RestTemplate restTemplate = new RestTemplate();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Connector calls a single bulk request makes at once, and the number of IDs it may contain
+    @Value("${edc.transfer.bulk.max-in-flight:16}")
+    private int bulkMaxInFlight;
+
+    @Value("${edc.transfer.bulk.max-size:1000}")
+    private int bulkMaxSize;
+
+    @Autowired
+    private RestTemplate edcRestTemplate;
+
+    @Autowired
+    private EdcTransferProfileRegistry profileRegistry;
 
     @Autowired
     private DataTransferReceiverService dataTransferReceiverService;
 
+    @Autowired
+    private DataTransferCompletionRegistry completionRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private BoundedExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        executor = new BoundedExecutor("edc-transfer", virtualThreads, maxConcurrency, maxWaiting);
+        executor.bindTo(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.close();
+    }
+
     /**
      * Initiates a data transfer with EDC connector and then retrieves the data
      * 
@@ -52,70 +113,210 @@ public class EdcTransferService {
      * @return List of data transfers retrieved after the EDC transfer is initiated
      */
     public List<DataTransfer> initiateTransferAndRetrieveData(String id) throws Exception {
-        // Step 1: Initiate the transfer with EDC
-        ResponseEntity<String> edcResponse = initiateEdcTransfer(id);
-        
-        // Step 2: Wait for the transfer to be processed
-        Thread.sleep(WAIT_SECONDS * 1000);
-        
-        // Step 3: Retrieve the data using the reference ID
-        return dataTransferReceiverService.getDataTransfersByReferenceId(id);
+        try {
+            return initiateTransferAndAwaitData(id, null).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
     }
 
     /**
-     * Initiates a data transfer with the EDC connector
+     * Initiates a data transfer with EDC connector. The returned future completes as soon as the provider has
+     * pushed the data for this ID, or after edc.transfer.timeout-ms if nothing arrives, with the data
+     * transfers stored for the ID. No thread is blocked while waiting.
+     *
+     * @param id The ID to use for both transfer request and reference ID
+     * @param profile Transfer profile to use, or null to route by ID
+     * @return Future list of data transfers for the ID
+     * @throws IllegalArgumentException if the profile does not exist
+     */
+    public CompletableFuture<List<DataTransfer>> initiateTransferAndAwaitData(String id, String profile) {
+        profileRegistry.resolve(profile, id);
+        // Register before initiating, so data that arrives before the EDC call returns is not missed
+        CompletableFuture<DataTransfer> arrival = completionRegistry.register(id);
+        try {
+            initiateEdcTransfer(id, profile);
+        } catch (Exception e) {
+            arrival.cancel(false);
+            return CompletableFuture.failedFuture(e);
+        }
+        return arrival
+                .completeOnTimeout(null, transferTimeoutMs, TimeUnit.MILLISECONDS)
+                .thenApplyAsync(transfer -> dataTransferReceiverService.getDataTransfersByReferenceId(id), executor);
+    }
+
+    /**
+     * Initiates a data transfer with the EDC connector. Calls that never reached the connector (no connection
+     * could be opened or leased from the pool) and 429 and 503 responses are retried up to edc.http.max-retries
+     * times with exponential backoff. Read timeouts and other errors are not, as the connector may already have
+     * started the transfer.
      * 
      * @param id The ID to use in the query parameters
+     * @param profile Transfer profile to use, or null for the profile whose id-pattern matches the ID (or the default)
      * @return Response from the EDC connector
+     * @throws IllegalArgumentException if the profile does not exist
+     */
+    public ResponseEntity<String> initiateEdcTransfer(String id, String profile) throws Exception {
+        EdcTransferProfileRegistry.TransferProfile transferProfile = profileRegistry.resolve(profile, id);
+        URI endpoint = transferProfile.getEndpoint();
+        HttpEntity<String> requestEntity = transferProfile.request(id);
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return edcRestTemplate.postForEntity(endpoint, requestEntity, String.class);
+            } catch (RestClientException e) {
+                if (attempt >= maxRetries || !isRetryable(e)) {
+                    throw e;
+                }
+                Thread.sleep(backoffMs(attempt));
+            }
+        }
+    }
+
+    /**
+     * Initiates transfers for several IDs, with at most edc.transfer.bulk.max-in-flight connector calls at once.
+     * Each ID gets its own status: "initiated" or "failed" (with the error), and when awaitData is set,
+     * "received" or "timed-out" depending on whether the provider pushed the data within edc.transfer.timeout-ms.
+     *
+     * @param ids The IDs to transfer, in the order the statuses are returned
+     * @param profile Transfer profile for all IDs, or null to route each ID by itself
+     * @param awaitData Whether to wait for the data of each initiated transfer to arrive
+     * @return Future per-ID statuses
+     * @throws IllegalArgumentException if there are more than edc.transfer.bulk.max-size IDs or the profile does not exist
+     * @throws RejectedExecutionException if too many transfers are already in progress
+     */
+    public CompletableFuture<List<Map<String, Object>>> initiateTransfersBulk(List<String> ids, String profile,
+                                                                              boolean awaitData) {
+        if (ids.size() > bulkMaxSize) {
+            throw new IllegalArgumentException("At most " + bulkMaxSize + " IDs can be transferred at once");
+        }
+        if (profile != null && !ids.isEmpty()) {
+            // Fail the whole request for an unknown profile rather than every ID
+            profileRegistry.resolve(profile, ids.get(0));
+        }
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        List<CompletableFuture<DataTransfer>> arrivals = new ArrayList<>();
+        if (awaitData) {
+            ids.forEach(id -> arrivals.add(completionRegistry.register(id)));
+        }
+
+        // A few workers take the IDs one after another, so a bulk request holds at most bulkMaxInFlight
+        // executor slots and connector calls however many IDs it has
+        // Each slot is written by one worker and read once all workers are done
+        List<Map<String, Object>> results = new ArrayList<>(Collections.nCopies(ids.size(), null));
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            for (int i = next.getAndIncrement(); i < ids.size(); i = next.getAndIncrement()) {
+                results.set(i, initiateForBulk(ids.get(i), profile));
+            }
+        };
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int w = 0; w < Math.min(bulkMaxInFlight, ids.size()); w++) {
+            try {
+                workers.add(CompletableFuture.runAsync(worker, executor));
+            } catch (RejectedExecutionException e) {
+                if (workers.isEmpty()) {
+                    arrivals.forEach(arrival -> arrival.cancel(false));
+                    throw e;
+                }
+                // The workers already running take the remaining IDs
+                break;
+            }
+        }
+
+        return CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)).thenCompose(done -> {
+            if (!awaitData) {
+                return CompletableFuture.completedFuture(results);
+            }
+            List<CompletableFuture<?>> pending = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                Map<String, Object> result = results.get(i);
+                CompletableFuture<DataTransfer> arrival = arrivals.get(i);
+                if (!"initiated".equals(result.get("status"))) {
+                    arrival.cancel(false);
+                    continue;
+                }
+                pending.add(arrival.completeOnTimeout(null, transferTimeoutMs, TimeUnit.MILLISECONDS)
+                        .thenAccept(transfer -> {
+                            if (transfer != null) {
+                                result.put("status", "received");
+                                result.put("transferId", transfer.getTransferId());
+                            } else {
+                                result.put("status", "timed-out");
+                            }
+                        }));
+            }
+            return CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new))
+                    .thenApply(all -> results);
+        });
+    }
+
+    private Map<String, Object> initiateForBulk(String id, String profile) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", id);
+        result.put("profile", profileRegistry.resolve(profile, id).getName());
+        try {
+            initiateEdcTransfer(id, profile);
+            result.put("status", "initiated");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.put("status", "failed");
+            result.put("error", "Interrupted");
+        } catch (Exception e) {
+            result.put("status", "failed");
+            result.put("error", e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Whether a failed call can be repeated without risking a second transfer: the request never left this
+     * service (the connection could not be opened or leased from the pool), or the connector turned it away
+     * with 429 or 503
+     */
+    private static boolean isRetryable(RestClientException e) {
+        if (e instanceof HttpClientErrorException.TooManyRequests
+                || e instanceof HttpServerErrorException.ServiceUnavailable) {
+            return true;
+        }
+        if (!(e instanceof ResourceAccessException)) {
+            return false;
+        }
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof ConnectTimeoutException
+                    || cause instanceof ConnectionRequestTimeoutException || cause instanceof UnknownHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Exponential backoff with jitter, so retries of many concurrent calls do not hit the connector together
      */
-    public ResponseEntity<String> initiateEdcTransfer(String id) throws Exception {
-        String endpoint = edcConnectorUrl + "/api/management/wrapper/ui/pages/contract-agreement-page/transfers";
-        
-        // Prepare headers
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("X-Api-Key", edcApiKey);
-        
-        // Prepare request payload
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("contractAgreementId", CONTRACT_AGREEMENT_ID);
-        
-        // Data sink properties
-        Map<String, String> dataSinkProperties = new HashMap<>();
-        dataSinkProperties.put("https://w3id.org/edc/v0.0.1/ns/type", "HttpData");
-        dataSinkProperties.put("https://w3id.org/edc/v0.0.1/ns/baseUrl", DATA_SINK_BASE_URL);
-        dataSinkProperties.put("https://w3id.org/edc/v0.0.1/ns/method", "POST");
-        dataSinkProperties.put("https://w3id.org/edc/v0.0.1/ns/queryParams", "");
-        
-        // Transfer process properties
-        Map<String, String> transferProcessProperties = new HashMap<>();
-        transferProcessProperties.put("https://w3id.org/edc/v0.0.1/ns/method", "GET");
-        transferProcessProperties.put("https://w3id.org/edc/v0.0.1/ns/pathSegments", "detail");
-        transferProcessProperties.put("https://w3id.org/edc/v0.0.1/ns/queryParams", "id=" + id);
-        
-        requestBody.put("dataSinkProperties", dataSinkProperties);
-        requestBody.put("transferProcessProperties", transferProcessProperties);
-        
-        // Convert to JSON and send request
-        String requestJson = objectMapper.writeValueAsString(requestBody);
-        HttpEntity<String> requestEntity = new HttpEntity<>(requestJson, headers);
-        
-        return restTemplate.postForEntity(endpoint, requestEntity, String.class);
+    private long backoffMs(int attempt) {
+        long backoff = Math.min(retryMaxBackoffMs, retryBackoffMs << Math.min(attempt, 20));
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
     }
     
     /**
      * Asynchronously initiates a transfer and returns a CompletableFuture
      * 
      * @param id The ID to use for both transfer request and reference ID
+     * @param profile Transfer profile to use, or null to route by ID
      * @return CompletableFuture that will complete with the list of data transfers
+     * @throws IllegalArgumentException if the profile does not exist
+     * @throws java.util.concurrent.RejectedExecutionException if too many transfers are already in progress
      */
-    public CompletableFuture<List<DataTransfer>> initiateTransferAsync(String id) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                return initiateTransferAndRetrieveData(id);
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to process EDC transfer", e);
-            }
-        });
+    public CompletableFuture<List<DataTransfer>> initiateTransferAsync(String id, String profile) {
+        profileRegistry.resolve(profile, id);
+        return CompletableFuture.supplyAsync(() -> initiateTransferAndAwaitData(id, profile), executor)
+                .thenCompose(Function.identity())
+                .exceptionally(e -> {
+                    throw new RuntimeException("Failed to process EDC transfer", e);
+                });
     }
 }
@@ -0,0 +1,188 @@
+package utcluj.aut.demosimpleapp.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Encrypts or decrypts many values per request. Items are processed in parallel on a dedicated pool sized to the
+ * number of cores, results are returned in input order, and a failing item produces an error entry instead of
+ * failing the whole batch.
+ */
+@Service
+public class EncryptionBatchService {
+
+    /**
+     * Batch operation with the request and response field names used by the single-value endpoints
+     */
+    public enum Operation {
+        ENCRYPT("plainText", "encrypted"),
+        DECRYPT("encryptedText", "decrypted");
+
+        private final String inputField;
+        private final String outputField;
+
+        Operation(String inputField, String outputField) {
+            this.inputField = inputField;
+            this.outputField = outputField;
+        }
+    }
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${encryption.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    @Value("${encryption.batch.max-in-flight:256}")
+    private int maxInFlight;
+
+    private final ExecutorService executor;
+
+    public EncryptionBatchService() {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "encryption-batch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Process a batch held in memory
+     * @param operation Encrypt or decrypt
+     * @param payloads Request items, each in the same shape as the single-value endpoint
+     * @return One result per item, in input order
+     */
+    public List<Map<String, Object>> process(Operation operation, List<Map<String, String>> payloads) {
+        if (payloads.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch size " + payloads.size() + " exceeds the limit of " + maxBatchSize);
+        }
+
+        List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>(payloads.size());
+        for (int i = 0; i < payloads.size(); i++) {
+            Map<String, String> payload = payloads.get(i);
+            futures.add(submit(operation, i, payload != null ? payload.get(operation.inputField) : null));
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<Map<String, Object>> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    /**
+     * Process an NDJSON stream of items, writing NDJSON results as they complete.
+     * At most {@code encryption.batch.max-in-flight} items are pending at any time, so memory use is bounded
+     * regardless of the stream length.
+     * @param operation Encrypt or decrypt
+     * @param in NDJSON request body, one item per line
+     * @param out Destination for NDJSON results, in input order
+     */
+    public void process(Operation operation, InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        Deque<CompletableFuture<Map<String, Object>>> pending = new ArrayDeque<>();
+
+        int index = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            pending.add(submitLine(operation, index++, line));
+            if (pending.size() >= maxInFlight) {
+                writeResult(writer, pending.poll().join());
+            }
+        }
+        while (!pending.isEmpty()) {
+            writeResult(writer, pending.poll().join());
+        }
+        writer.flush();
+    }
+
+    private CompletableFuture<Map<String, Object>> submitLine(Operation operation, int index, String line) {
+        String value;
+        try {
+            JsonNode node = objectMapper.readTree(line);
+            JsonNode field = node.get(operation.inputField);
+            value = field != null && field.isTextual() ? field.asText() : null;
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.completedFuture(error(index, "Invalid JSON: " + e.getOriginalMessage()));
+        }
+        return submit(operation, index, value);
+    }
+
+    private CompletableFuture<Map<String, Object>> submit(Operation operation, int index, String value) {
+        if (value == null || value.isEmpty()) {
+            return CompletableFuture.completedFuture(error(index, operation.inputField + " cannot be empty"));
+        }
+        Function<String, String> function = operation == Operation.ENCRYPT
+                ? encryptionService::encrypt
+                : encryptionService::decrypt;
+        return CompletableFuture
+                .supplyAsync(() -> success(index, operation.outputField, function.apply(value)), executor)
+                .exceptionally(e -> error(index, rootMessage(e)));
+    }
+
+    private void writeResult(Writer writer, Map<String, Object> result) throws IOException {
+        writer.write(objectMapper.writeValueAsString(result));
+        writer.write('\n');
+    }
+
+    private static Map<String, Object> success(int index, String field, String value) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("index", index);
+        result.put(field, value);
+        return result;
+    }
+
+    private static Map<String, Object> error(int index, String message) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("index", index);
+        result.put("error", message);
+        return result;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,148 @@
+package utcluj.aut.demosimpleapp.service;
+
+import org.springframework.stereotype.Service;
+import utcluj.aut.demosimpleapp.util.ChunkedDecryptionInputStream;
+import utcluj.aut.demosimpleapp.util.ChunkedEncryptionOutputStream;
+import utcluj.aut.demosimpleapp.util.CipherPool;
+import utcluj.aut.demosimpleapp.util.KeyProvider;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Encrypts text values and CSV files with the keys supplied by the configured {@link KeyProvider}.
+ *
+ * Text is encrypted with AES-GCM and returned as {@code <keyId>:<Base64(nonce + ciphertext)>}, so the key
+ * needed for decryption is always known. Values without a key ID were produced by earlier versions with
+ * AES/ECB and the default key; they can still be decrypted.
+ */
+@Service
+public class EncryptionService {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String LEGACY_TRANSFORMATION = "AES/ECB/PKCS5Padding";
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final char KEY_ID_SEPARATOR = ':';
+
+    private final KeyProvider keyProvider;
+    private final CipherPool ciphers;
+    private final CipherPool legacyCiphers;
+    private final SecureRandom random = new SecureRandom();
+
+    public EncryptionService(KeyProvider keyProvider) {
+        this.keyProvider = keyProvider;
+        int poolSize = Runtime.getRuntime().availableProcessors() * 4;
+        this.ciphers = new CipherPool(TRANSFORMATION, poolSize);
+        this.legacyCiphers = new CipherPool(LEGACY_TRANSFORMATION, poolSize);
+    }
+
+    /**
+     * Encrypt data with the active key
+     * @param data Data to encrypt
+     * @return Key ID and Base64-encoded nonce and ciphertext
+     */
+    public String encrypt(String data) {
+        String keyId = keyProvider.getActiveKeyId();
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        try {
+            Cipher cipher = ciphers.borrow();
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, keyProvider.getKey(keyId), new GCMParameterSpec(TAG_LENGTH_BITS, nonce));
+                byte[] plaintext = data.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer output = ByteBuffer.allocate(NONCE_LENGTH + cipher.getOutputSize(plaintext.length));
+                output.put(nonce);
+                cipher.doFinal(ByteBuffer.wrap(plaintext), output);
+                return keyId + KEY_ID_SEPARATOR + Base64.getEncoder().encodeToString(output.array());
+            } finally {
+                ciphers.release(cipher);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Encryption failed", e);
+        }
+    }
+
+    /**
+     * Decrypt data produced by {@link #encrypt(String)} or by the legacy ECB encryption
+     * @param encryptedData Encrypted value
+     * @return Decrypted data as string
+     */
+    public String decrypt(String encryptedData) {
+        int separator = encryptedData.indexOf(KEY_ID_SEPARATOR);
+        if (separator < 0) {
+            return decryptLegacy(encryptedData);
+        }
+        try {
+            String keyId = encryptedData.substring(0, separator);
+            byte[] decoded = Base64.getDecoder().decode(encryptedData.substring(separator + 1));
+            Cipher cipher = ciphers.borrow();
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, keyProvider.getKey(keyId),
+                        new GCMParameterSpec(TAG_LENGTH_BITS, decoded, 0, NONCE_LENGTH));
+                byte[] decryptedBytes = cipher.doFinal(decoded, NONCE_LENGTH, decoded.length - NONCE_LENGTH);
+                return new String(decryptedBytes, StandardCharsets.UTF_8);
+            } finally {
+                ciphers.release(cipher);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Decryption failed", e);
+        }
+    }
+
+    private String decryptLegacy(String encryptedData) {
+        try {
+            byte[] decodedBytes = Base64.getDecoder().decode(encryptedData);
+            Cipher cipher = legacyCiphers.borrow();
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, keyProvider.getKey(KeyProvider.DEFAULT_KEY_ID));
+                byte[] decryptedBytes = cipher.doFinal(decodedBytes);
+                return new String(decryptedBytes, StandardCharsets.UTF_8);
+            } finally {
+                legacyCiphers.release(cipher);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Decryption failed", e);
+        }
+    }
+
+    /**
+     * Wrap an output stream so that everything written to it is encrypted in authenticated chunks
+     * with the active key. The returned stream must be closed to write the final chunk.
+     * @param out Destination for the encrypted bytes
+     * @return Stream accepting plaintext
+     */
+    public OutputStream encryptingStream(OutputStream out) throws IOException {
+        String keyId = keyProvider.getActiveKeyId();
+        return new ChunkedEncryptionOutputStream(out, keyId, keyProvider.getKey(keyId));
+    }
+
+    /**
+     * Open a file written by {@link #encryptingStream(OutputStream)} for reading from a plaintext offset
+     * @param file Encrypted file
+     * @param plaintextOffset Offset of the first plaintext byte to return
+     * @return Stream producing the decrypted plaintext from the given offset
+     */
+    public InputStream decryptingStream(Path file, long plaintextOffset) throws IOException {
+        return ChunkedDecryptionInputStream.open(file, keyProvider, plaintextOffset);
+    }
+
+    /**
+     * Open encrypted data from a ranged source, such as a stored blob, for reading from a plaintext offset
+     * @param source Encrypted data written by {@link #encryptingStream(OutputStream)}
+     * @param plaintextOffset Offset of the first plaintext byte to return
+     * @return Stream producing the decrypted plaintext from the given offset
+     */
+    public InputStream decryptingStream(ChunkedDecryptionInputStream.Source source, long plaintextOffset)
+            throws IOException {
+        return ChunkedDecryptionInputStream.open(source, keyProvider, plaintextOffset);
+    }
+}
@@ -0,0 +1,374 @@
+package utcluj.aut.demosimpleapp.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import utcluj.aut.demosimpleapp.model.DigitalProductPassport;
+import utcluj.aut.demosimpleapp.model.RepairEntry;
+import utcluj.aut.demosimpleapp.repository.DigitalProductPassportRepository;
+import utcluj.aut.demosimpleapp.util.CsvRecordReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk import of passports from a JSON array, NDJSON (one passport per line) or CSV (a header row naming
+ * passport fields, then one passport per row). The input is parsed one passport at a time and saved in
+ * batches (passports.import.batch-size), each batch in its own transaction with its inserts, repair entries
+ * included, grouped into JDBC batches.
+ * <p>
+ * Passports without a serial number, with invalid fields, or with a serial number that is already stored
+ * or appeared earlier in the same import are skipped and listed in the report. A batch that fails to save
+ * is retried one passport at a time, so a single bad row does not lose the rest of the batch. Batches saved
+ * before an unreadable input (e.g. a truncated JSON array) stay saved.
+ */
+@Service
+public class PassportImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PassportImportService.class);
+
+    // Length of the varchar columns Hibernate generates for strings
+    private static final int MAX_STRING_LENGTH = 255;
+
+    private static final Set<String> CSV_COLUMNS = Set.of(
+            "productName", "manufacturer", "serialNumber", "manufacturingDate", "productType", "modelNumber");
+
+    public enum Format {
+        JSON, NDJSON, CSV
+    }
+
+    @Autowired
+    private DigitalProductPassportRepository passportRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${passports.import.batch-size:500}")
+    private int batchSize;
+
+    @Value("${passports.import.max-errors:1000}")
+    private int maxErrors;
+
+    /**
+     * Import passports from a stream
+     * @return Report with the number of passports received, imported, skipped as duplicates and failed,
+     * and the errors (index of the passport in the input, its serial number and the error), of which at
+     * most passports.import.max-errors are listed. If the input became unreadable, "aborted" holds the reason.
+     * @throws IllegalArgumentException if a CSV header names an unknown column
+     */
+    public Map<String, Object> importPassports(InputStream in, Format format) throws IOException {
+        Import run = new Import();
+        try {
+            switch (format) {
+                case JSON -> readJsonArray(in, run);
+                case NDJSON -> readNdjson(in, run);
+                case CSV -> readCsv(in, run);
+            }
+        } catch (JsonProcessingException e) {
+            run.aborted = "Invalid JSON: " + e.getOriginalMessage();
+        } catch (IOException e) {
+            run.aborted = e.getMessage();
+        }
+        // Rows read before an error in the input are still saved
+        run.flush();
+        if (run.aborted != null) {
+            logger.warn("Passport import aborted after {} passports: {}", run.received, run.aborted);
+        }
+        return run.report();
+    }
+
+    private void readJsonArray(InputStream in, Import run) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of passports");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new IOException("Unexpected end of JSON array");
+                }
+                if (token == JsonToken.START_OBJECT) {
+                    run.accept(parser.readValueAsTree());
+                } else {
+                    parser.skipChildren();
+                    run.reject(null, "Expected a JSON object");
+                }
+            }
+        }
+    }
+
+    private void readNdjson(InputStream in, Import run) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(line);
+            } catch (JsonProcessingException e) {
+                run.reject(null, "Invalid JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            if (node.isObject()) {
+                run.accept(node);
+            } else {
+                run.reject(null, "Expected a JSON object");
+            }
+        }
+    }
+
+    private void readCsv(InputStream in, Import run) throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(
+                new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        List<String> header = reader.readRecord();
+        if (header == null) {
+            return;
+        }
+        header = header.stream().map(String::trim).collect(Collectors.toList());
+        // Spreadsheet exports often start with a byte order mark
+        if (!header.isEmpty() && header.get(0).startsWith("\uFEFF")) {
+            header.set(0, header.get(0).substring(1));
+        }
+        for (String column : header) {
+            if (!CSV_COLUMNS.contains(column)) {
+                throw new IllegalArgumentException("Unknown CSV column: " + column + " (expected " + CSV_COLUMNS + ")");
+            }
+        }
+
+        List<String> record;
+        while ((record = reader.readRecord()) != null) {
+            if (record.size() == 1 && record.get(0).isEmpty()) {
+                continue;
+            }
+            if (record.size() != header.size()) {
+                run.reject(null, "Expected " + header.size() + " fields but found " + record.size());
+                continue;
+            }
+            ObjectNode node = objectMapper.createObjectNode();
+            for (int i = 0; i < header.size(); i++) {
+                if (!record.get(i).isEmpty()) {
+                    node.put(header.get(i), record.get(i));
+                }
+            }
+            run.accept(node);
+        }
+    }
+
+    /**
+     * Passport read from the input, with its position in the input
+     */
+    private record Row(int index, DigitalProductPassport passport) {
+    }
+
+    /**
+     * State of one import: the batch being filled, the serial numbers seen so far, counts and errors
+     */
+    private class Import {
+
+        private final List<Row> batch = new ArrayList<>(batchSize);
+        private final Set<String> seenSerialNumbers = new HashSet<>();
+        private final List<Map<String, Object>> errors = new ArrayList<>();
+        private int received;
+        private int imported;
+        private int duplicates;
+        private int failed;
+        private String aborted;
+
+        void accept(JsonNode node) {
+            int index = received++;
+            String serialNumber = node.path("serialNumber").isTextual() ? node.get("serialNumber").asText() : null;
+            DigitalProductPassport passport;
+            try {
+                passport = objectMapper.treeToValue(node, DigitalProductPassport.class);
+            } catch (JsonProcessingException e) {
+                fail(index, serialNumber, "Invalid passport: " + e.getOriginalMessage());
+                return;
+            }
+            String invalid = validate(passport);
+            if (invalid != null) {
+                fail(index, serialNumber, invalid);
+                return;
+            }
+            if (!seenSerialNumbers.add(passport.getSerialNumber())) {
+                duplicate(index, passport.getSerialNumber(), "Serial number appears earlier in the import");
+                return;
+            }
+            prepare(passport);
+            batch.add(new Row(index, passport));
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void reject(String serialNumber, String message) {
+            fail(received++, serialNumber, message);
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            Set<String> existing = passportRepository.findExistingSerialNumbers(
+                    batch.stream().map(row -> row.passport().getSerialNumber()).collect(Collectors.toList()));
+            List<Row> rows = new ArrayList<>(batch.size());
+            for (Row row : batch) {
+                if (existing.contains(row.passport().getSerialNumber())) {
+                    duplicate(row.index(), row.passport().getSerialNumber(), "Serial number already exists");
+                } else {
+                    rows.add(row);
+                }
+            }
+            batch.clear();
+            if (rows.isEmpty()) {
+                return;
+            }
+
+            try {
+                passportRepository.saveAll(rows.stream().map(Row::passport).collect(Collectors.toList()));
+                imported += rows.size();
+            } catch (RuntimeException e) {
+                // Retry one by one so a single bad row does not lose the rest of the batch
+                logger.warn("Batch insert of {} passports failed, retrying individually: {}",
+                        rows.size(), e.getMessage());
+                for (Row row : rows) {
+                    try {
+                        prepare(row.passport());
+                        passportRepository.save(row.passport());
+                        imported++;
+                    } catch (RuntimeException rowError) {
+                        fail(row.index(), row.passport().getSerialNumber(), rootMessage(rowError));
+                    }
+                }
+            }
+            // Within a request the persistence context outlives each batch's transaction; without clearing it,
+            // every flush would check all passports imported so far
+            entityManager.clear();
+        }
+
+        Map<String, Object> report() {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("received", received);
+            report.put("imported", imported);
+            report.put("duplicates", duplicates);
+            report.put("failed", failed);
+            if (aborted != null) {
+                report.put("aborted", aborted);
+            }
+            report.put("errors", errors);
+            if (duplicates + failed > errors.size()) {
+                report.put("errorsTruncated", true);
+            }
+            return report;
+        }
+
+        private void duplicate(int index, String serialNumber, String message) {
+            duplicates++;
+            addError(index, serialNumber, message);
+        }
+
+        private void fail(int index, String serialNumber, String message) {
+            failed++;
+            addError(index, serialNumber, message);
+        }
+
+        private void addError(int index, String serialNumber, String message) {
+            if (errors.size() >= maxErrors) {
+                return;
+            }
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("index", index);
+            error.put("serialNumber", serialNumber);
+            error.put("error", message);
+            errors.add(error);
+        }
+    }
+
+    /**
+     * @return Why the passport cannot be imported, or null if it is valid
+     */
+    private static String validate(DigitalProductPassport passport) {
+        if (passport.getSerialNumber() == null || passport.getSerialNumber().isBlank()) {
+            return "serialNumber is required";
+        }
+        String tooLong = tooLong("productName", passport.getProductName());
+        tooLong = tooLong != null ? tooLong : tooLong("manufacturer", passport.getManufacturer());
+        tooLong = tooLong != null ? tooLong : tooLong("serialNumber", passport.getSerialNumber());
+        tooLong = tooLong != null ? tooLong : tooLong("productType", passport.getProductType());
+        tooLong = tooLong != null ? tooLong : tooLong("modelNumber", passport.getModelNumber());
+        if (tooLong != null) {
+            return tooLong;
+        }
+        List<RepairEntry> repairs = passport.getRepairHistory();
+        for (int i = 0; repairs != null && i < repairs.size(); i++) {
+            RepairEntry repair = repairs.get(i);
+            String field = "repairHistory[" + i + "].";
+            if (repair == null) {
+                return "repairHistory[" + i + "] is null";
+            }
+            tooLong = tooLong(field + "description", repair.getDescription());
+            tooLong = tooLong != null ? tooLong : tooLong(field + "repairType", repair.getRepairType());
+            tooLong = tooLong != null ? tooLong : tooLong(field + "technician", repair.getTechnician());
+            if (tooLong != null) {
+                return tooLong;
+            }
+        }
+        return null;
+    }
+
+    private static String tooLong(String field, String value) {
+        return value != null && value.length() > MAX_STRING_LENGTH
+                ? field + " is longer than " + MAX_STRING_LENGTH + " characters" : null;
+    }
+
+    /**
+     * Make an imported passport a new entity: IDs, version and CSV file details are assigned by the server,
+     * and repair entries point back to their passport. Also undoes the IDs assigned by a failed batch insert.
+     */
+    private static void prepare(DigitalProductPassport passport) {
+        passport.setId(null);
+        passport.setVersion(0);
+        passport.setCsvFileName(null);
+        passport.setCsvSha256(null);
+        passport.setEncrypted(false);
+        if (passport.getRepairHistory() == null) {
+            passport.setRepairHistory(new ArrayList<>());
+        }
+        for (RepairEntry repair : passport.getRepairHistory()) {
+            repair.setId(null);
+            repair.setPassport(passport);
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+}
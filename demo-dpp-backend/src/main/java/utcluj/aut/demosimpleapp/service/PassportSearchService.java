@@ -0,0 +1,217 @@
+package utcluj.aut.demosimpleapp.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Service;
+import utcluj.aut.demosimpleapp.config.SearchIndexInitializer;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Search over passports and their repair history. A passport matches when every search term is found in its
+ * product name, manufacturer, serial number, model number or product type, or in one of its repair entries'
+ * description, repair type or technician. Terms match as word prefixes ("batt" finds "Battery"), or by
+ * trigram similarity when fuzzy (typos such as "batery").
+ * <p>
+ * On PostgreSQL the text is matched with full-text search and pg_trgm, on GIN expression indexes created by
+ * {@link SearchIndexInitializer}. Being indexes on the tables themselves,
+ * they are updated by every write, including bulk imports and direct repair inserts, with nothing to resync.
+ * Other databases (H2 in tests) fall back to unindexed substring matching. Fuzzy terms that are similar to
+ * much of the table (a common word with a typo) still have to recheck every candidate row, so they are slower
+ * than prefix terms.
+ * <p>
+ * Results come in ID order with the total count and facet counts by product type and manufacturer.
+ * Each facet is counted with the other facet's filter applied but not its own, so all values of the facet
+ * being filtered on stay visible.
+ */
+@Service
+public class PassportSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PassportSearchService.class);
+
+    /**
+     * Passport text that search matches; the search indexes are built on this exact expression
+     */
+    public static final String PASSPORT_DOCUMENT = "(coalesce(product_name, '') || ' ' || coalesce(manufacturer, '')"
+            + " || ' ' || coalesce(serial_number, '') || ' ' || coalesce(model_number, '')"
+            + " || ' ' || coalesce(product_type, ''))";
+
+    /**
+     * Repair entry text that search matches; the search indexes are built on this exact expression
+     */
+    public static final String REPAIR_DOCUMENT = "(coalesce(description, '') || ' ' || coalesce(repair_type, '')"
+            + " || ' ' || coalesce(technician, ''))";
+
+    /**
+     * Full-text vector of a document expression, as indexed; punctuation becomes spaces first, otherwise the
+     * parser reads the "-0012345" in "SN-0012345" as a signed number that no split query term matches
+     */
+    public static String textVector(String document) {
+        return "to_tsvector('simple', regexp_replace(" + document + ", '[^[:alnum:]]+', ' ', 'g'))";
+    }
+
+    // Terms beyond this are ignored, so a pasted paragraph cannot produce an unbounded query
+    private static final int MAX_TERMS = 8;
+
+    @Autowired
+    private DataSource dataSource;
+
+    // Injected only so pg_trgm is installed before init() looks for it
+    @Autowired
+    private SearchIndexInitializer searchIndexInitializer;
+
+    @Value("${passports.search.facet-size:20}")
+    private int facetSize;
+
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private boolean postgres;
+    private boolean trigramAvailable;
+
+    @PostConstruct
+    public void init() throws Exception {
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        postgres = "PostgreSQL".equals(product);
+        if (postgres) {
+            trigramAvailable = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "select exists (select 1 from pg_extension where extname = 'pg_trgm')",
+                    new MapSqlParameterSource(), Boolean.class));
+        } else {
+            logger.info("Passport search uses unindexed substring matching on {}", product);
+        }
+    }
+
+    /**
+     * Search passports
+     * @param query Search terms, separated by spaces or punctuation; null or blank matches every passport
+     * @param fuzzy Match terms by similarity instead of as prefixes (PostgreSQL with pg_trgm only; otherwise
+     *              terms match as prefixes)
+     * @param productType Only passports of this product type, if not null
+     * @param manufacturer Only passports of this manufacturer, if not null
+     * @param pageable Page number and size; results are always in ID order
+     * @return "total", "results" (ID, product name, serial number, product type, manufacturer and model number
+     * of each passport on the page) and "facets" (productType and manufacturer, each a list of value and count,
+     * most frequent first, at most passports.search.facet-size values)
+     */
+    public Map<String, Object> search(String query, boolean fuzzy, String productType, String manufacturer,
+                                      Pageable pageable) {
+        List<String> terms = terms(query);
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String matched = terms.isEmpty() ? null : "select id from digital_product_passport where "
+                + textMatch(PASSPORT_DOCUMENT, terms, fuzzy, params)
+                + " union select passport_id from repair_entry where "
+                + textMatch(REPAIR_DOCUMENT, terms, fuzzy, params);
+        params.addValue("productType", productType);
+        params.addValue("manufacturer", manufacturer);
+        params.addValue("limit", pageable.getPageSize());
+        params.addValue("offset", pageable.getOffset());
+        params.addValue("facetSize", facetSize);
+
+        String where = where(matched, productType != null, manufacturer != null);
+        List<Map<String, Object>> results = jdbcTemplate.query(
+                "select p.id, p.product_name, p.serial_number, p.product_type, p.manufacturer, p.model_number"
+                        + " from digital_product_passport p" + where + " order by p.id limit :limit offset :offset",
+                params, (rs, rowNum) -> {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("id", rs.getLong("id"));
+                    row.put("productName", rs.getString("product_name"));
+                    row.put("serialNumber", rs.getString("serial_number"));
+                    row.put("productType", rs.getString("product_type"));
+                    row.put("manufacturer", rs.getString("manufacturer"));
+                    row.put("modelNumber", rs.getString("model_number"));
+                    return row;
+                });
+        // The first page being short gives the total without counting
+        long total = pageable.getOffset() == 0 && results.size() < pageable.getPageSize()
+                ? results.size()
+                : jdbcTemplate.queryForObject("select count(*) from digital_product_passport p" + where,
+                        params, Long.class);
+
+        Map<String, Object> facets = new LinkedHashMap<>();
+        facets.put("productType", facet("product_type", where(matched, false, manufacturer != null), params));
+        facets.put("manufacturer", facet("manufacturer", where(matched, productType != null, false), params));
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("total", total);
+        response.put("results", results);
+        response.put("facets", facets);
+        return response;
+    }
+
+    /**
+     * Split a query into lower-case terms of letters and digits, the way {@link #textVector} splits the indexed
+     * text, so "M-2023" becomes "m" and "2023"
+     */
+    static List<String> terms(String query) {
+        if (query == null) {
+            return List.of();
+        }
+        return Arrays.stream(query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(term -> !term.isEmpty())
+                .distinct()
+                .limit(MAX_TERMS)
+                .collect(Collectors.toList());
+    }
+
+    private String textMatch(String document, List<String> terms, boolean fuzzy, MapSqlParameterSource params) {
+        if (postgres && !(fuzzy && trigramAvailable)) {
+            // Alphanumeric terms need no quoting in a tsquery
+            params.addValue("tsquery", terms.stream().map(term -> term + ":*").collect(Collectors.joining(" & ")));
+            return textVector(document) + " @@ to_tsquery('simple', :tsquery)";
+        }
+        List<String> conditions = new ArrayList<>(terms.size());
+        for (int i = 0; i < terms.size(); i++) {
+            if (postgres) {
+                // word_similarity(term, document) above pg_trgm.word_similarity_threshold (0.6 by default)
+                params.addValue("term" + i, terms.get(i));
+                conditions.add(":term" + i + " <% " + document);
+            } else {
+                params.addValue("term" + i, "%" + terms.get(i) + "%");
+                conditions.add("lower(" + document + ") like :term" + i);
+            }
+        }
+        return String.join(" and ", conditions);
+    }
+
+    private static String where(String matched, boolean byProductType, boolean byManufacturer) {
+        List<String> conditions = new ArrayList<>(3);
+        if (matched != null) {
+            conditions.add("p.id in (" + matched + ")");
+        }
+        if (byProductType) {
+            conditions.add("p.product_type = :productType");
+        }
+        if (byManufacturer) {
+            conditions.add("p.manufacturer = :manufacturer");
+        }
+        return conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions);
+    }
+
+    private List<Map<String, Object>> facet(String column, String where, MapSqlParameterSource params) {
+        return jdbcTemplate.query("select p." + column + " as facet_value, count(*) as facet_count"
+                        + " from digital_product_passport p" + where
+                        + (where.isEmpty() ? " where " : " and ") + "p." + column + " is not null"
+                        + " group by p." + column + " order by facet_count desc, facet_value limit :facetSize",
+                params, (rs, rowNum) -> {
+                    Map<String, Object> value = new LinkedHashMap<>();
+                    value.put("value", rs.getString("facet_value"));
+                    value.put("count", rs.getLong("facet_count"));
+                    return value;
+                });
+    }
+}
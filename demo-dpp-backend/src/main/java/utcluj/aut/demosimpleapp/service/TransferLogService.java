@@ -0,0 +1,509 @@
+package utcluj.aut.demosimpleapp.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of the messages posted to /log (the results of EDC transfers). Messages are queued in a
+ * bounded buffer and a single writer thread appends them in batches to segment files, so a burst of requests
+ * costs a few large writes instead of one file open per request.
+ * <p>
+ * Each entry is one line, "{@code <UTC timestamp> - <message>}", with backslashes, line feeds and carriage
+ * returns in the message escaped. The writer stamps entries, so timestamps never decrease through the log.
+ * A segment is named after the timestamp of its first entry ({@code transfer-<epoch millis>.log}) and a new one
+ * is started once the current one reaches the maximum size or age, which lets time range reads skip whole
+ * segments. Old segments are kept; archive or delete them as needed.
+ * <p>
+ * The fsync policy decides what a power failure can lose: "none" leaves syncing to the operating system,
+ * "interval" syncs at most every fsync-interval-ms, and "always" syncs every batch before its messages are
+ * acknowledged (messages written together share one sync).
+ */
+@Service
+public class TransferLogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransferLogService.class);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("transfer-(\\d+)\\.log");
+    private static final String SEPARATOR = " - ";
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // Tail reads start with this much of the end of a segment and widen it until enough lines are found
+    private static final int TAIL_WINDOW = 64 * 1024;
+
+    /**
+     * A log entry
+     */
+    public record Entry(Instant timestamp, String message) {
+    }
+
+    /**
+     * Entries read from the log
+     * @param nextCursor Position to continue reading from, or null when there are no more matching entries
+     */
+    public record Scan(List<Entry> entries, String nextCursor) {
+    }
+
+    private record Pending(String message, CompletableFuture<Void> written) {
+    }
+
+    private record Segment(long start, Path path) {
+    }
+
+    private enum FsyncPolicy { NONE, INTERVAL, ALWAYS }
+
+    @Value("${transfer-log.dir:transfer-log}")
+    private String dir;
+
+    @Value("${transfer-log.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${transfer-log.segment-max-bytes:67108864}")
+    private long segmentMaxBytes;
+
+    @Value("${transfer-log.segment-max-age-ms:86400000}")
+    private long segmentMaxAgeMs;
+
+    @Value("${transfer-log.fsync:interval}")
+    private String fsync;
+
+    @Value("${transfer-log.fsync-interval-ms:1000}")
+    private long fsyncIntervalMs;
+
+    private Path directory;
+    private FsyncPolicy fsyncPolicy;
+    private BlockingQueue<Pending> queue;
+    private Thread writer;
+    private volatile boolean running;
+    // Taken by append and shutdown, so no message is queued after the writer was told to stop
+    private final Object appendLock = new Object();
+
+    // Owned by the writer thread
+    private FileChannel channel;
+    private long segmentStart;
+    private Instant lastTimestamp = Instant.EPOCH;
+    private boolean unsynced;
+    private long lastSyncNanos;
+
+    @PostConstruct
+    public void start() throws IOException {
+        fsyncPolicy = switch (fsync) {
+            case "none" -> FsyncPolicy.NONE;
+            case "interval" -> FsyncPolicy.INTERVAL;
+            case "always" -> FsyncPolicy.ALWAYS;
+            default -> throw new IllegalStateException(
+                    "Unknown transfer-log.fsync: " + fsync + " (none, interval or always)");
+        };
+        directory = Paths.get(dir);
+        Files.createDirectories(directory);
+        List<Segment> segments = segments();
+        if (!segments.isEmpty()) {
+            Segment last = segments.get(segments.size() - 1);
+            lastTimestamp = Instant.ofEpochMilli(last.start());
+            List<Entry> lastEntry = tailOf(last, 1);
+            if (!lastEntry.isEmpty() && lastEntry.get(0).timestamp().isAfter(lastTimestamp)) {
+                lastTimestamp = lastEntry.get(0).timestamp();
+            }
+        }
+
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writer = new Thread(this::writeLoop, "transfer-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        logger.info("Transfer log in {} (fsync {}, {} existing segments)", directory.toAbsolutePath(), fsync,
+                segments.size());
+    }
+
+    /**
+     * Stop accepting messages, write out everything already queued and sync it
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        synchronized (appendLock) {
+            running = false;
+        }
+        writer.join();
+    }
+
+    /**
+     * Queue a message for the log
+     * @return Completed once the message is written (and synced, with fsync=always), or exceptionally with the
+     * IOException if writing failed
+     * @throws IllegalStateException if the buffer is full or the log is shutting down
+     */
+    public CompletableFuture<Void> append(String message) {
+        Pending pending = new Pending(message, new CompletableFuture<>());
+        synchronized (appendLock) {
+            if (!running) {
+                throw new IllegalStateException("Transfer log is not running");
+            }
+            if (!queue.offer(pending)) {
+                throw new IllegalStateException("Transfer log queue is full");
+            }
+        }
+        return pending.written();
+    }
+
+    /**
+     * Read entries in log order
+     * @param from Only entries at or after this time, if not null
+     * @param to Only entries at or before this time, if not null
+     * @param after Cursor returned by a previous read with the same range, to continue where it stopped
+     * @param limit Maximum number of entries
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Scan read(Instant from, Instant to, String after, int limit) throws IOException {
+        long cursorSegment = Long.MIN_VALUE;
+        long cursorOffset = 0;
+        if (after != null) {
+            String[] parts = after.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid log cursor: " + after);
+            }
+            try {
+                cursorSegment = Long.parseLong(parts[0]);
+                cursorOffset = Long.parseLong(parts[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid log cursor: " + after);
+            }
+        }
+
+        List<Segment> segments = segments();
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            if (to != null && segment.start() > to.toEpochMilli()) {
+                break;
+            }
+            // Entries in a segment are no later than the start of the next one
+            boolean beforeRange = from != null && i + 1 < segments.size()
+                    && segments.get(i + 1).start() < from.toEpochMilli();
+            if (beforeRange || segment.start() < cursorSegment) {
+                continue;
+            }
+            long offset = segment.start() == cursorSegment ? cursorOffset : 0;
+            try (FileChannel in = FileChannel.open(segment.path(), StandardOpenOption.READ)) {
+                if (offset == 0 && from != null && segment.start() < from.toEpochMilli()) {
+                    offset = seek(in, from);
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+                ByteArrayOutputStream line = new ByteArrayOutputStream();
+                long lineStart = offset;
+                long position = offset;
+                int read;
+                while ((read = in.read(buffer, position)) > 0) {
+                    byte[] bytes = buffer.array();
+                    int start = 0;
+                    for (int end = 0; end < read; end++) {
+                        if (bytes[end] != '\n') {
+                            continue;
+                        }
+                        line.write(bytes, start, end - start);
+                        start = end + 1;
+                        Entry entry = parse(line.toString(StandardCharsets.UTF_8));
+                        line.reset();
+                        if (entry != null && (from == null || !entry.timestamp().isBefore(from))) {
+                            if (to != null && entry.timestamp().isAfter(to)) {
+                                return new Scan(entries, null);
+                            }
+                            if (entries.size() == limit) {
+                                return new Scan(entries, segment.start() + ":" + lineStart);
+                            }
+                            entries.add(entry);
+                        }
+                        lineStart = position + start;
+                    }
+                    // The rest of the buffer continues in the next read, or is a line still being written
+                    line.write(bytes, start, read - start);
+                    position += read;
+                    buffer.clear();
+                }
+            }
+        }
+        return new Scan(entries, null);
+    }
+
+    /**
+     * Read the last entries of the log
+     * @param count Maximum number of entries
+     * @return The entries in log order
+     */
+    public List<Entry> tail(int count) throws IOException {
+        List<Segment> segments = segments();
+        Deque<Entry> entries = new ArrayDeque<>(count);
+        for (int i = segments.size() - 1; i >= 0 && entries.size() < count; i--) {
+            List<Entry> segmentTail = tailOf(segments.get(i), count - entries.size());
+            for (int j = segmentTail.size() - 1; j >= 0; j--) {
+                entries.addFirst(segmentTail.get(j));
+            }
+        }
+        return new ArrayList<>(entries);
+    }
+
+    /**
+     * Number of messages waiting to be written
+     */
+    public int getQueuedCount() {
+        return queue != null ? queue.size() : 0;
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        long pollMs = fsyncPolicy == FsyncPolicy.INTERVAL ? Math.max(1, fsyncIntervalMs) : 200;
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(pollMs, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+                if (fsyncPolicy == FsyncPolicy.INTERVAL && unsynced
+                        && System.nanoTime() - lastSyncNanos >= TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMs)) {
+                    sync();
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to sync transfer log segment", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        closeSegment();
+        // Only left when the writer was interrupted; fail them rather than leave their callers waiting
+        List<Pending> unwritten = new ArrayList<>();
+        queue.drainTo(unwritten);
+        unwritten.forEach(pending -> pending.written().completeExceptionally(
+                new IllegalStateException("Transfer log stopped before the message was written")));
+    }
+
+    private void writeBatch(List<Pending> batch) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Instant timestamp = now.isAfter(lastTimestamp) ? now : lastTimestamp;
+        try {
+            if (channel == null || channel.size() >= segmentMaxBytes
+                    || timestamp.toEpochMilli() - segmentStart >= segmentMaxAgeMs) {
+                closeSegment();
+                // Segment names must increase even when the clock has not moved on since the previous segment
+                if (timestamp.toEpochMilli() <= segmentStart) {
+                    timestamp = Instant.ofEpochMilli(segmentStart + 1);
+                }
+                segmentStart = timestamp.toEpochMilli();
+                channel = FileChannel.open(directory.resolve("transfer-" + segmentStart + ".log"),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            lastTimestamp = timestamp;
+
+            StringBuilder lines = new StringBuilder();
+            String prefix = timestamp + SEPARATOR;
+            for (Pending pending : batch) {
+                lines.append(prefix).append(escape(pending.message())).append('\n');
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            unsynced = true;
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                sync();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to write {} messages to the transfer log", batch.size(), e);
+            // Continue in a new segment; a partially written line in this one is ignored by readers
+            closeSegment();
+            batch.forEach(pending -> pending.written().completeExceptionally(e));
+            return;
+        }
+        batch.forEach(pending -> pending.written().complete(null));
+    }
+
+    private void sync() throws IOException {
+        channel.force(false);
+        unsynced = false;
+        lastSyncNanos = System.nanoTime();
+    }
+
+    private void closeSegment() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (unsynced && fsyncPolicy != FsyncPolicy.NONE) {
+                sync();
+            }
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close transfer log segment", e);
+        }
+        channel = null;
+        unsynced = false;
+    }
+
+    private List<Segment> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(path -> {
+                        Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                        return matcher.matches() ? new Segment(Long.parseLong(matcher.group(1)), path) : null;
+                    })
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparingLong(Segment::start))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Binary search a segment for where entries at or after a time may start. Only positions known to be
+     * followed by earlier entries are skipped, so the result may be somewhat before the first matching entry.
+     */
+    private static long seek(FileChannel in, Instant from) throws IOException {
+        long low = 0;
+        long high = in.size();
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        while (high - low > READ_BUFFER_SIZE) {
+            long middle = (low + high) / 2;
+            buffer.clear();
+            int read = in.read(buffer, middle);
+            // The first complete line after the middle
+            String[] lines = new String(buffer.array(), 0, Math.max(read, 0), StandardCharsets.UTF_8)
+                    .split("\n", 3);
+            Entry entry = lines.length == 3 ? parse(lines[1]) : null;
+            if (entry != null && entry.timestamp().isBefore(from)) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        if (low == 0) {
+            return 0;
+        }
+        // Start at the first line beginning after low
+        buffer.clear();
+        int read = in.read(buffer, low);
+        for (int i = 0; i < read; i++) {
+            if (buffer.get(i) == '\n') {
+                return low + i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Last complete entries of a segment, reading backwards from its end
+     */
+    private static List<Entry> tailOf(Segment segment, int count) throws IOException {
+        try (FileChannel in = FileChannel.open(segment.path(), StandardOpenOption.READ)) {
+            long size = in.size();
+            long window = TAIL_WINDOW;
+            while (true) {
+                long start = Math.max(0, size - window);
+                ByteBuffer bytes = ByteBuffer.allocate((int) (size - start));
+                long position = start;
+                while (bytes.hasRemaining()) {
+                    int read = in.read(bytes, position);
+                    if (read < 0) {
+                        break;
+                    }
+                    position += read;
+                }
+                // Line feeds are single bytes in UTF-8, so only the cut-off first line can be garbled
+                String[] lines = new String(bytes.array(), 0, bytes.position(), StandardCharsets.UTF_8)
+                        .split("\n", -1);
+                // The last element follows the last line feed: empty, or a line still being written
+                int first = start > 0 ? 1 : 0;
+                if (lines.length - 1 - first >= count || start == 0) {
+                    List<Entry> entries = new ArrayList<>(count);
+                    for (int i = lines.length - 2; i >= first && entries.size() < count; i--) {
+                        Entry entry = parse(lines[i]);
+                        if (entry != null) {
+                            entries.add(0, entry);
+                        }
+                    }
+                    if (entries.size() == count || start == 0) {
+                        return entries;
+                    }
+                }
+                window = Math.min(window * 4, Integer.MAX_VALUE - 8);
+            }
+        }
+    }
+
+    static String escape(String message) {
+        StringBuilder escaped = new StringBuilder(message.length());
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            switch (c) {
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    static String unescape(String escaped) {
+        StringBuilder message = new StringBuilder(escaped.length());
+        for (int i = 0; i < escaped.length(); i++) {
+            char c = escaped.charAt(i);
+            if (c == '\\' && i + 1 < escaped.length()) {
+                char next = escaped.charAt(++i);
+                message.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                message.append(c);
+            }
+        }
+        return message.toString();
+    }
+
+    /**
+     * @return The entry, or null for a line that is not one (e.g. cut off by a failed write)
+     */
+    private static Entry parse(String line) {
+        int separator = line.indexOf(SEPARATOR);
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            return new Entry(Instant.parse(line.substring(0, separator)),
+                    unescape(line.substring(separator + SEPARATOR.length())));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package utcluj.aut.demosimpleapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import utcluj.aut.demosimpleapp.model.StoredBlob;
+import utcluj.aut.demosimpleapp.repository.StoredBlobRepository;
+import utcluj.aut.demosimpleapp.util.BlobStore;
+import utcluj.aut.demosimpleapp.util.StoredContentFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed storage for uploaded files on top of the configured {@link BlobStore}.
+ *
+ * Content is stored under a key derived from the SHA-256 of the uploaded bytes, which is computed while the
+ * upload is written to a staging file, and sharded into directories by the first two bytes of the hash
+ * (ab/cd/abcd...). Content is compressed with the configured codec before it is encrypted and stored with a
+ * {@link StoredContentFormat} header. Identical content is stored once; the blobs table counts the stored files using each
+ * blob, and a blob is deleted when its last reference is released. Encrypted and plain copies of the same
+ * content, or copies compressed with different codecs, are separate blobs. New content is uploaded outside any
+ * transaction; the reference is then taken in a short transaction holding the blob's row lock, which checks the
+ * object is still there, so a blob being deleted cannot be handed out to a new upload.
+ */
+@Service
+public class UploadStorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadStorageService.class);
+
+    private static final Pattern CONTENT_KEY =
+            Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}(\\.gz|\\.zst)?(\\.enc)?");
+    private static final int MAX_STORE_ATTEMPTS = 3;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private StoredBlobRepository blobRepository;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // none, gzip or zstd
+    @Value("${uploads.compression:gzip}")
+    private String compression;
+
+    private StoredContentFormat.Codec codec;
+
+    @PostConstruct
+    public void init() {
+        codec = StoredContentFormat.Codec.fromName(compression);
+        logger.info("Compressing stored uploads with {}", codec);
+    }
+
+    /**
+     * Content as stored
+     * @param key Key of the blob holding the content
+     * @param sha256 Hex SHA-256 of the content as uploaded
+     * @param storedSize Size of the blob in bytes
+     * @param deduplicated Whether an existing blob was reused
+     */
+    public record StoredContent(String key, String sha256, long storedSize, boolean encrypted, boolean deduplicated) {
+    }
+
+    /**
+     * Store content, reusing the existing blob if the same content has been stored before.
+     * The caller holds one reference to the returned blob and has to {@link #release(String)} it.
+     * @param in Content to store; read to the end and closed
+     * @param encrypt Whether to store the content encrypted
+     */
+    public StoredContent store(InputStream in, boolean encrypt) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        Path staging = blobStore.createStagingFile();
+        try {
+            // Stream the upload through the digest, the compressor and the chunked cipher so memory use does
+            // not grow with the file size
+            long contentLength;
+            try (OutputStream file = Files.newOutputStream(staging)) {
+                StoredContentFormat.writeHeader(file, codec, encrypt);
+                try (InputStream content = new DigestInputStream(in, digest);
+                     OutputStream out = codec.compress(encrypt ? encryptionService.encryptingStream(file) : file)) {
+                    contentLength = content.transferTo(out);
+                }
+            }
+            StoredContentFormat.writeContentLength(staging, contentLength);
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            String key = keyFor(sha256, codec, encrypt);
+            long stagedSize = Files.size(staging);
+
+            StoredBlob blob = reference(key, sha256, encrypt, stagedSize, false);
+            if (blob == null) {
+                // No connection or row lock is held while the content is transferred to the store
+                blobStore.put(key, staging);
+                try {
+                    blob = reference(key, sha256, encrypt, stagedSize, true);
+                } catch (IOException | RuntimeException e) {
+                    discardUpload(key, sha256, encrypt, stagedSize);
+                    throw e;
+                }
+            }
+            boolean deduplicated = blob.getRefCount() > 1;
+            if (deduplicated) {
+                logger.debug("Reusing blob {} ({} references)", key, blob.getRefCount());
+            }
+            return new StoredContent(key, sha256, blob.getStoredSize(), encrypt, deduplicated);
+        } finally {
+            Files.deleteIfExists(staging);
+        }
+    }
+
+    /**
+     * Take a reference to the blob under the key in a transaction of its own
+     * @param uploaded Whether the content has been put in the store; if not, only an existing blob is referenced
+     * @return The blob, or null if it does not exist and nothing was uploaded
+     */
+    private StoredBlob reference(String key, String sha256, boolean encrypted, long stagedSize, boolean uploaded)
+            throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> acquire(key, sha256, encrypted, stagedSize, uploaded));
+            } catch (DataIntegrityViolationException e) {
+                // Another upload of the same content created the blob first; take a reference to it
+                if (attempt == MAX_STORE_ATTEMPTS) {
+                    throw e;
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private StoredBlob acquire(String key, String sha256, boolean encrypted, long stagedSize, boolean uploaded) {
+        StoredBlob blob = blobRepository.findForUpdate(key).orElse(null);
+        if (blob != null && blob.getRefCount() > 0) {
+            blob.setRefCount(blob.getRefCount() + 1);
+            return blob;
+        }
+        if (!uploaded) {
+            return null;
+        }
+        try {
+            // Deleting an unreferenced blob removes the object under the row lock, possibly after the upload
+            if (blobStore.size(key) != stagedSize) {
+                throw new IOException("Blob " + key + " was deleted while it was being stored");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (blob == null) {
+            blob = new StoredBlob();
+            blob.setStorageKey(key);
+            blob.setSha256(sha256);
+            blob.setEncrypted(encrypted);
+            blob.setCreatedAt(LocalDateTime.now());
+        }
+        // A blob left unreferenced but not yet deleted is overwritten with the new copy
+        blob.setStoredSize(stagedSize);
+        blob.setRefCount(1);
+        return blobRepository.saveAndFlush(blob);
+    }
+
+    /**
+     * Delete the object of an upload whose reference could not be taken, unless another upload references it
+     * by now. A row without references is created first so the object is deleted under its lock.
+     */
+    private void discardUpload(String key, String sha256, boolean encrypted, long stagedSize) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!blobRepository.existsById(key)) {
+                    StoredBlob blob = new StoredBlob();
+                    blob.setStorageKey(key);
+                    blob.setSha256(sha256);
+                    blob.setEncrypted(encrypted);
+                    blob.setStoredSize(stagedSize);
+                    blob.setCreatedAt(LocalDateTime.now());
+                    blobRepository.saveAndFlush(blob);
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another upload created the blob; deleteIfUnreferenced leaves it alone if it is referenced
+        } catch (RuntimeException e) {
+            logger.warn("Could not record blob {} for deletion, it may be left in the store: {}", key,
+                    e.getMessage());
+            return;
+        }
+        deleteIfUnreferenced(key);
+    }
+
+    /**
+     * Drop a reference to a blob. Must be called inside the transaction that removes the reference; call
+     * {@link #deleteIfUnreferenced(String)} after it has been committed.
+     */
+    public void release(String key) {
+        if (isContentKey(key) && blobRepository.release(key) == 0) {
+            logger.warn("Released blob {} that had no references", key);
+        }
+    }
+
+    /**
+     * Delete a blob if nothing references it any more. Files stored before uploads were content-addressed
+     * belong to a single passport and are deleted unconditionally.
+     */
+    public void deleteIfUnreferenced(String key) {
+        try {
+            if (!isContentKey(key)) {
+                blobStore.delete(key);
+                return;
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                StoredBlob blob = blobRepository.findForUpdate(key).orElse(null);
+                if (blob == null || blob.getRefCount() > 0) {
+                    return;
+                }
+                try {
+                    blobStore.delete(key);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                blobRepository.delete(blob);
+            });
+        } catch (IOException | RuntimeException e) {
+            // The blob stays unreferenced and is retried on the next startup
+            logger.warn("Could not delete blob {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Delete blobs whose last reference was released without the blob being deleted, e.g. because the
+     * application stopped in between
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void deleteUnreferencedBlobs() {
+        for (String key : blobRepository.findUnreferencedKeys()) {
+            deleteIfUnreferenced(key);
+        }
+    }
+
+    /**
+     * Key of a blob: the hex SHA-256 of the content sharded by its first two bytes, e.g. ab/cd/abcd...,
+     * with suffixes for the codec and encryption
+     */
+    static String keyFor(String sha256, StoredContentFormat.Codec codec, boolean encrypted) {
+        return sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256
+                + codec.getKeySuffix() + (encrypted ? ".enc" : "");
+    }
+
+    private static boolean isContentKey(String key) {
+        return CONTENT_KEY.matcher(key).matches();
+    }
+}
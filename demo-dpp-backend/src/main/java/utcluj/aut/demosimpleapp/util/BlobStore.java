@@ -0,0 +1,52 @@
+package utcluj.aut.demosimpleapp.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Storage backend for uploaded files. Blobs are addressed by keys made of '/'-separated path segments
+ * and are only ever written whole, read (optionally from an offset) and deleted.
+ */
+public interface BlobStore {
+
+    /**
+     * Store the content of a local file, replacing any blob under the key
+     * @param key Key to store the blob under
+     * @param file File to store; it may be moved into the store, so the caller must not use it afterwards
+     */
+    void put(String key, Path file) throws IOException;
+
+    /**
+     * Open a blob for reading
+     * @param offset Offset of the first byte to return
+     * @param length Number of bytes to return, or -1 to read to the end of the blob
+     * @throws java.io.FileNotFoundException if there is no blob under the key
+     */
+    InputStream open(String key, long offset, long length) throws IOException;
+
+    /**
+     * @return Size of the blob in bytes, or -1 if there is no blob under the key
+     */
+    long size(String key) throws IOException;
+
+    /**
+     * Delete a blob; does nothing if there is no blob under the key
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * @return The local file holding the blob, for zero-copy transfers, or null if the store is not local
+     */
+    default Path localPath(String key) {
+        return null;
+    }
+
+    /**
+     * Create an empty temporary file to write an upload to before it is stored
+     */
+    default Path createStagingFile() throws IOException {
+        return Files.createTempFile("upload-", ".tmp");
+    }
+}
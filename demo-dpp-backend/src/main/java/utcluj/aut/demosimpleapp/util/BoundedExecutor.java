@@ -0,0 +1,136 @@
+package utcluj.aut.demosimpleapp.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor for blocking work such as remote calls and database access. At most maxConcurrency tasks run at once
+ * and at most maxWaiting more may wait for a slot; further tasks are rejected with
+ * {@link RejectedExecutionException} instead of piling up.
+ * <p>
+ * With virtual threads every task gets its own virtual thread, which waits for a slot cheaply; otherwise tasks
+ * run on a fixed pool of maxConcurrency platform threads. Running, waiting, completed and rejected counts are
+ * published as {@code executor.*} meters tagged with the executor name when bound to a registry.
+ */
+public class BoundedExecutor implements Executor, MeterBinder, AutoCloseable {
+
+    private final String name;
+    private final boolean virtualThreads;
+    private final int maxConcurrency;
+    private final int maxWaiting;
+    private final ExecutorService delegate;
+    private final Semaphore slots;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public BoundedExecutor(String name, boolean virtualThreads, int maxConcurrency, int maxWaiting) {
+        this.name = name;
+        this.virtualThreads = virtualThreads;
+        this.maxConcurrency = maxConcurrency;
+        this.maxWaiting = maxWaiting;
+        if (virtualThreads) {
+            this.delegate = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory());
+            this.slots = new Semaphore(maxConcurrency);
+        } else {
+            this.delegate = Executors.newFixedThreadPool(maxConcurrency,
+                    Thread.ofPlatform().name(name + "-", 1).daemon(true).factory());
+            this.slots = null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (pending.incrementAndGet() > maxConcurrency + maxWaiting) {
+            pending.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException(name + " is saturated (" + maxConcurrency + " running, "
+                    + maxWaiting + " waiting)");
+        }
+        try {
+            delegate.execute(() -> run(task));
+        } catch (RejectedExecutionException e) {
+            // Shut down
+            pending.decrementAndGet();
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private void run(Runnable task) {
+        try {
+            if (slots != null) {
+                slots.acquireUninterruptibly();
+            }
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+                if (slots != null) {
+                    slots.release();
+                }
+            }
+        } finally {
+            pending.decrementAndGet();
+            completed.incrementAndGet();
+        }
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public int getWaitingCount() {
+        return Math.max(0, pending.get() - active.get());
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Tags tags = Tags.of("name", name);
+        Gauge.builder("executor.active", this, BoundedExecutor::getActiveCount)
+                .tags(tags).description("Tasks currently running").register(registry);
+        Gauge.builder("executor.queued", this, BoundedExecutor::getWaitingCount)
+                .tags(tags).description("Tasks waiting for a free slot").register(registry);
+        Gauge.builder("executor.pool.max", this, BoundedExecutor::getMaxConcurrency)
+                .tags(tags).description("Maximum number of tasks running at once").register(registry);
+        FunctionCounter.builder("executor.completed", this, BoundedExecutor::getCompletedCount)
+                .tags(tags).description("Tasks finished").register(registry);
+        FunctionCounter.builder("executor.rejected", this, BoundedExecutor::getRejectedCount)
+                .tags(tags).description("Tasks rejected because the executor was saturated").register(registry);
+    }
+
+    @Override
+    public void close() {
+        delegate.shutdown();
+    }
+}
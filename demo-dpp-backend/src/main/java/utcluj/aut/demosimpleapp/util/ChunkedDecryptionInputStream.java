@@ -0,0 +1,228 @@
+package utcluj.aut.demosimpleapp.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+
+/**
+ * Input stream that decrypts data written by {@link ChunkedEncryptionOutputStream}.
+ * Frames are decrypted and authenticated one at a time; a stream that ends before the final frame
+ * (or continues after it) is reported as an error instead of returning partial data.
+ */
+public class ChunkedDecryptionInputStream extends InputStream {
+
+    private final DataInputStream in;
+    private final SecretKey key;
+    private final Cipher cipher;
+    private final int chunkSize;
+    private final byte[] ciphertext;
+    private final byte[] buffer;
+    private final byte[] nonce = new byte[ChunkedEncryptionFormat.NONCE_LENGTH];
+    private int position;
+    private int limit;
+    private long chunkIndex;
+    private boolean finished;
+
+    /**
+     * @param in Encrypted data, starting with the file header
+     * @param keyProvider Keys to look up the key named in the header
+     */
+    public ChunkedDecryptionInputStream(InputStream in, KeyProvider keyProvider) throws IOException {
+        this(new DataInputStream(new BufferedInputStream(in)), keyProvider);
+    }
+
+    private ChunkedDecryptionInputStream(DataInputStream in, KeyProvider keyProvider) throws IOException {
+        this(in, keyProvider, ChunkedEncryptionFormat.readHeader(in), 0);
+    }
+
+    /**
+     * Create a stream over frames that start somewhere after the header
+     * @param in Stream positioned at the start of frame firstChunkIndex
+     * @param header Header read from the start of the file
+     * @param firstChunkIndex Index of the first frame in the stream
+     */
+    private ChunkedDecryptionInputStream(DataInputStream in, KeyProvider keyProvider,
+                                         ChunkedEncryptionFormat.Header header, long firstChunkIndex)
+            throws IOException {
+        this.in = in;
+        this.key = keyProvider.getKey(header.keyId());
+        this.chunkSize = header.chunkSize();
+        this.chunkIndex = firstChunkIndex;
+        this.ciphertext = new byte[chunkSize + ChunkedEncryptionFormat.TAG_LENGTH];
+        this.buffer = new byte[chunkSize + ChunkedEncryptionFormat.TAG_LENGTH];
+        try {
+            this.cipher = Cipher.getInstance(ChunkedEncryptionFormat.TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to create cipher", e);
+        }
+    }
+
+    /**
+     * Open an encrypted file for reading from an arbitrary plaintext offset.
+     * Only the frame containing the offset and the ones after it are read and decrypted.
+     * @param file Encrypted file
+     * @param keyProvider Keys to look up the key named in the header
+     * @param plaintextOffset Offset of the first plaintext byte to return
+     * @return Stream producing plaintext starting at the given offset
+     */
+    public static ChunkedDecryptionInputStream open(Path file, KeyProvider keyProvider, long plaintextOffset)
+            throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ChunkedEncryptionFormat.Header header = ChunkedEncryptionFormat.readHeader(Channels.newInputStream(channel));
+            int chunkSize = header.chunkSize();
+            long chunkIndex = plaintextOffset / chunkSize;
+            channel.position(header.length()
+                    + chunkIndex * (chunkSize + ChunkedEncryptionFormat.FRAME_OVERHEAD));
+            ChunkedDecryptionInputStream stream = new ChunkedDecryptionInputStream(
+                    new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel))),
+                    keyProvider, header, chunkIndex);
+            stream.skipNBytes(plaintextOffset - chunkIndex * chunkSize);
+            return stream;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Encrypted data that can be read from any offset, such as a blob in an object store
+     */
+    @FunctionalInterface
+    public interface Source {
+
+        /**
+         * @param offset Offset of the first encrypted byte to return
+         * @param length Number of bytes to return, or -1 to read to the end
+         */
+        InputStream open(long offset, long length) throws IOException;
+    }
+
+    /**
+     * Open encrypted data for reading from an arbitrary plaintext offset. The header is read with one
+     * request to the source and the frames from the one containing the offset onwards with another.
+     * @param source Encrypted data
+     * @param keyProvider Keys to look up the key named in the header
+     * @param plaintextOffset Offset of the first plaintext byte to return
+     * @return Stream producing plaintext starting at the given offset
+     */
+    public static ChunkedDecryptionInputStream open(Source source, KeyProvider keyProvider, long plaintextOffset)
+            throws IOException {
+        ChunkedEncryptionFormat.Header header;
+        try (InputStream in = source.open(0, ChunkedEncryptionFormat.MAX_HEADER_LENGTH)) {
+            header = ChunkedEncryptionFormat.readHeader(in);
+        }
+        int chunkSize = header.chunkSize();
+        long chunkIndex = plaintextOffset / chunkSize;
+        InputStream frames = source.open(header.length()
+                + chunkIndex * (chunkSize + ChunkedEncryptionFormat.FRAME_OVERHEAD), -1);
+        try {
+            ChunkedDecryptionInputStream stream = new ChunkedDecryptionInputStream(
+                    new DataInputStream(new BufferedInputStream(frames)), keyProvider, header, chunkIndex);
+            stream.skipNBytes(plaintextOffset - chunkIndex * chunkSize);
+            return stream;
+        } catch (IOException | RuntimeException e) {
+            frames.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The plaintext chunk size recorded in the file header
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Make sure there is decrypted data in the buffer
+     * @return false once the final frame has been fully consumed
+     */
+    private boolean fill() throws IOException {
+        while (position == limit) {
+            if (finished) {
+                return false;
+            }
+            readFrame();
+        }
+        return true;
+    }
+
+    private void readFrame() throws IOException {
+        byte flags;
+        int length;
+        try {
+            flags = in.readByte();
+            length = in.readInt();
+            if (length < ChunkedEncryptionFormat.TAG_LENGTH || length > ciphertext.length) {
+                throw new IOException("Invalid frame length " + length + " for chunk " + chunkIndex);
+            }
+            in.readFully(nonce);
+            in.readFully(ciphertext, 0, length);
+        } catch (EOFException e) {
+            throw new IOException("Encrypted file is truncated at chunk " + chunkIndex, e);
+        }
+
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key,
+                    new GCMParameterSpec(ChunkedEncryptionFormat.TAG_LENGTH * 8, nonce));
+            cipher.updateAAD(ChunkedEncryptionFormat.associatedData(chunkIndex, flags));
+            limit = cipher.doFinal(ciphertext, 0, length, buffer, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Decryption failed for chunk " + chunkIndex, e);
+        }
+        position = 0;
+        chunkIndex++;
+
+        if ((flags & ChunkedEncryptionFormat.FLAG_FINAL) != 0) {
+            finished = true;
+            if (in.read() != -1) {
+                throw new IOException("Unexpected data after final chunk");
+            }
+        } else if (limit != chunkSize) {
+            throw new IOException("Short non-final chunk " + (chunkIndex - 1));
+        }
+    }
+}
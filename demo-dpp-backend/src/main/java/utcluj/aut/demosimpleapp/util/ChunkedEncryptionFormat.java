@@ -0,0 +1,177 @@
+package utcluj.aut.demosimpleapp.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Binary layout used for encrypted CSV files on disk.
+ *
+ * A file starts with a header (magic bytes, format version, plaintext chunk size and the ID of the key
+ * used to encrypt it) followed by a sequence of independently authenticated AES-GCM frames:
+ * <pre>
+ *   header: MAGIC(4) | VERSION(1) | CHUNK_SIZE(4) | KEY_ID_LENGTH(1) | KEY_ID
+ *   frame:  FLAGS(1) | CIPHERTEXT_LENGTH(4) | NONCE(12) | CIPHERTEXT + TAG
+ * </pre>
+ * Version 1 files have no key ID and were encrypted with {@link KeyProvider#DEFAULT_KEY_ID}.
+ * Every frame holds exactly CHUNK_SIZE plaintext bytes except the last one, which carries the FINAL flag.
+ * The chunk index and the flags are bound to each frame as additional authenticated data, so frames cannot
+ * be reordered, dropped or truncated without failing decryption.
+ */
+public final class ChunkedEncryptionFormat {
+
+    static final byte[] MAGIC = {(byte) 0x89, 'D', 'P', 'E'};
+    static final byte VERSION_WITHOUT_KEY_ID = 1;
+    static final byte VERSION = 2;
+    static final int FIXED_HEADER_LENGTH = MAGIC.length + 1 + Integer.BYTES;
+    public static final int MAX_HEADER_LENGTH = FIXED_HEADER_LENGTH + 1 + 255;
+
+    static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    static final int NONCE_LENGTH = 12;
+    static final int TAG_LENGTH = 16;
+    static final int FRAME_HEADER_LENGTH = 1 + Integer.BYTES + NONCE_LENGTH;
+    static final int FRAME_OVERHEAD = FRAME_HEADER_LENGTH + TAG_LENGTH;
+
+    static final byte FLAG_FINAL = 0x01;
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private ChunkedEncryptionFormat() {
+    }
+
+    /**
+     * Parsed file header
+     * @param chunkSize Plaintext bytes per frame
+     * @param keyId ID of the key the file was encrypted with
+     * @param length Size of the header in bytes, i.e. the offset of the first frame
+     */
+    record Header(int chunkSize, String keyId, int length) {
+    }
+
+    /**
+     * Check whether a file on disk starts with the chunked encryption header
+     * @param file File to inspect
+     * @return true if the file uses this format, false for legacy or plain files
+     */
+    public static boolean isChunkedFormat(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(MAGIC.length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return false;
+                }
+            }
+            return Arrays.equals(buffer.array(), MAGIC);
+        }
+    }
+
+    /**
+     * Check whether data starts with the chunked encryption header
+     * @param in Stream positioned at the start of the data
+     * @return true if the data uses this format, false for legacy or plain data
+     */
+    public static boolean isChunkedFormat(InputStream in) throws IOException {
+        return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+    }
+
+    /**
+     * Compute the plaintext length of encrypted data from its header and total size
+     * @param in Stream positioned at the start of the header
+     * @param encryptedLength Size of the encrypted data in bytes
+     * @return Number of plaintext bytes
+     */
+    public static long plaintextLength(InputStream in, long encryptedLength) throws IOException {
+        Header header = readHeader(in);
+        return plaintextLength(encryptedLength, header.length(), header.chunkSize());
+    }
+
+    /**
+     * Compute the plaintext length of an encrypted file from its header and size on disk
+     * @param file Encrypted file
+     * @return Number of plaintext bytes in the file
+     */
+    public static long plaintextLength(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header header = readHeader(Channels.newInputStream(channel));
+            return plaintextLength(channel.size(), header.length(), header.chunkSize());
+        }
+    }
+
+    /**
+     * Compute the plaintext length of an encrypted file from its size on disk without decrypting it
+     * @param encryptedLength Size of the encrypted file in bytes
+     * @param headerLength Size of the file header in bytes
+     * @param chunkSize Plaintext chunk size recorded in the header
+     * @return Number of plaintext bytes in the file
+     */
+    static long plaintextLength(long encryptedLength, int headerLength, int chunkSize) {
+        long body = encryptedLength - headerLength;
+        long fullFrame = (long) chunkSize + FRAME_OVERHEAD;
+        long frames = (body + fullFrame - 1) / fullFrame;
+        return body - frames * FRAME_OVERHEAD;
+    }
+
+    static void writeHeader(OutputStream out, int chunkSize, String keyId) throws IOException {
+        byte[] keyIdBytes = keyId.getBytes(StandardCharsets.UTF_8);
+        if (keyIdBytes.length == 0 || keyIdBytes.length > 255) {
+            throw new IllegalArgumentException("Invalid encryption key ID: " + keyId);
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(chunkSize);
+        data.writeByte(keyIdBytes.length);
+        data.write(keyIdBytes);
+        data.flush();
+    }
+
+    /**
+     * Read and validate the header
+     * @return The parsed header
+     */
+    static Header readHeader(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        try {
+            data.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a chunked encrypted file");
+            }
+            byte version = data.readByte();
+            if (version != VERSION && version != VERSION_WITHOUT_KEY_ID) {
+                throw new IOException("Unsupported encrypted file version: " + version);
+            }
+            int chunkSize = data.readInt();
+            if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+                throw new IOException("Invalid chunk size in encrypted file header: " + chunkSize);
+            }
+            if (version == VERSION_WITHOUT_KEY_ID) {
+                return new Header(chunkSize, KeyProvider.DEFAULT_KEY_ID, FIXED_HEADER_LENGTH);
+            }
+            byte[] keyId = new byte[data.readUnsignedByte()];
+            data.readFully(keyId);
+            return new Header(chunkSize, new String(keyId, StandardCharsets.UTF_8),
+                    FIXED_HEADER_LENGTH + 1 + keyId.length);
+        } catch (EOFException e) {
+            throw new IOException("Truncated encrypted file header", e);
+        }
+    }
+
+    static byte[] associatedData(long chunkIndex, byte flags) {
+        return ByteBuffer.allocate(Long.BYTES + 1)
+                .putLong(chunkIndex)
+                .put(flags)
+                .array();
+    }
+}
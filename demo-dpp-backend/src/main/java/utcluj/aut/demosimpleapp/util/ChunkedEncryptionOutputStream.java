@@ -0,0 +1,122 @@
+package utcluj.aut.demosimpleapp.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * Output stream that encrypts everything written to it using the {@link ChunkedEncryptionFormat}.
+ * Only one plaintext chunk is buffered at a time, so memory use does not depend on the size of the data.
+ * The final frame is written by {@link #close()}; a stream that is not closed is not decryptable.
+ */
+public class ChunkedEncryptionOutputStream extends OutputStream {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final DataOutputStream out;
+    private final SecretKey key;
+    private final Cipher cipher;
+    private final byte[] buffer;
+    private final byte[] ciphertext;
+    private final byte[] nonce = new byte[ChunkedEncryptionFormat.NONCE_LENGTH];
+    private int buffered;
+    private long chunkIndex;
+    private boolean closed;
+
+    public ChunkedEncryptionOutputStream(OutputStream out, String keyId, SecretKey key) throws IOException {
+        this(out, keyId, key, ChunkedEncryptionFormat.DEFAULT_CHUNK_SIZE);
+    }
+
+    public ChunkedEncryptionOutputStream(OutputStream out, String keyId, SecretKey key, int chunkSize)
+            throws IOException {
+        if (chunkSize <= 0 || chunkSize > ChunkedEncryptionFormat.MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.key = key;
+        this.buffer = new byte[chunkSize];
+        this.ciphertext = new byte[chunkSize + ChunkedEncryptionFormat.TAG_LENGTH];
+        try {
+            this.cipher = Cipher.getInstance(ChunkedEncryptionFormat.TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to create cipher", e);
+        }
+        ChunkedEncryptionFormat.writeHeader(this.out, chunkSize, keyId);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (buffered == buffer.length) {
+            writeFrame(false);
+        }
+        buffer[buffered++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            // A full buffer is only emitted once more data arrives, so the last chunk is always the final frame
+            if (buffered == buffer.length) {
+                writeFrame(false);
+            }
+            int n = Math.min(len, buffer.length - buffered);
+            System.arraycopy(b, off, buffer, buffered, n);
+            buffered += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeFrame(true);
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeFrame(boolean last) throws IOException {
+        byte flags = last ? ChunkedEncryptionFormat.FLAG_FINAL : 0;
+        int length;
+        try {
+            RANDOM.nextBytes(nonce);
+            cipher.init(Cipher.ENCRYPT_MODE, key,
+                    new GCMParameterSpec(ChunkedEncryptionFormat.TAG_LENGTH * 8, nonce));
+            cipher.updateAAD(ChunkedEncryptionFormat.associatedData(chunkIndex, flags));
+            length = cipher.doFinal(buffer, 0, buffered, ciphertext, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Encryption failed for chunk " + chunkIndex, e);
+        }
+        out.writeByte(flags);
+        out.writeInt(length);
+        out.write(nonce);
+        out.write(ciphertext, 0, length);
+        buffered = 0;
+        chunkIndex++;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package utcluj.aut.demosimpleapp.util;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of {@link Cipher} instances for one transformation. {@code Cipher.getInstance} walks the
+ * security providers on every call, which is far more expensive than {@code init} on an existing
+ * instance, so ciphers are kept and reused. A cipher must be re-initialised after it is borrowed.
+ */
+public class CipherPool {
+
+    private final String transformation;
+    private final int maxIdle;
+    private final Queue<Cipher> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    public CipherPool(String transformation, int maxIdle) {
+        this.transformation = transformation;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Take an idle cipher or create a new one if none is available
+     */
+    public Cipher borrow() throws GeneralSecurityException {
+        Cipher cipher = idle.poll();
+        if (cipher != null) {
+            idleCount.decrementAndGet();
+            return cipher;
+        }
+        return Cipher.getInstance(transformation);
+    }
+
+    /**
+     * Give a cipher back to the pool. Ciphers beyond the idle limit are dropped.
+     */
+    public void release(Cipher cipher) {
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(cipher);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package utcluj.aut.demosimpleapp.util;
+
+import javax.crypto.SecretKey;
+import java.nio.file.Path;
+
+/**
+ * Single key stored in a file, generated on first use. This is the original key setup of the application;
+ * the key is exposed under {@link KeyProvider#DEFAULT_KEY_ID}.
+ */
+public class FileKeyProvider implements KeyProvider {
+
+    private final SecretKey key;
+
+    public FileKeyProvider(Path keyFile) {
+        this.key = EncryptionUtil.loadOrGenerateKey(keyFile);
+    }
+
+    @Override
+    public String getActiveKeyId() {
+        return DEFAULT_KEY_ID;
+    }
+
+    @Override
+    public SecretKey getKey(String keyId) {
+        if (!DEFAULT_KEY_ID.equals(keyId)) {
+            throw new IllegalArgumentException("Unknown encryption key: " + keyId);
+        }
+        return key;
+    }
+}
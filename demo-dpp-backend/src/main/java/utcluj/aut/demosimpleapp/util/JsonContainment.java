@@ -0,0 +1,75 @@
+package utcluj.aut.demosimpleapp.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * JSON containment with the semantics of the PostgreSQL jsonb {@code @>} operator, registered as an H2 function
+ * so JSON filters behave the same in tests and local runs as on PostgreSQL.
+ */
+public final class JsonContainment {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private JsonContainment() {
+    }
+
+    /**
+     * Check whether a JSON document contains a fragment
+     * @return true if every field of the fragment is present in the document with a contained value,
+     * null if either argument is null
+     */
+    public static Boolean contains(String document, String fragment) {
+        if (document == null || fragment == null) {
+            return null;
+        }
+        try {
+            return contains(MAPPER.readTree(document), MAPPER.readTree(fragment), true);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private static boolean contains(JsonNode document, JsonNode fragment, boolean topLevel) {
+        if (document.isObject() && fragment.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = fragment.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                JsonNode value = document.get(field.getKey());
+                if (value == null || !contains(value, field.getValue(), false)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (document.isArray()) {
+            if (fragment.isArray()) {
+                for (JsonNode element : fragment) {
+                    if (!containsElement(document, element)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            // A top-level array also contains a single primitive value
+            return topLevel && fragment.isValueNode() && containsElement(document, fragment);
+        }
+        if (document.isNumber() && fragment.isNumber()) {
+            return document.decimalValue().compareTo(fragment.decimalValue()) == 0;
+        }
+        return document.isValueNode() && document.equals(fragment);
+    }
+
+    private static boolean containsElement(JsonNode array, JsonNode element) {
+        for (JsonNode candidate : array) {
+            if (contains(candidate, element, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,32 @@
+package utcluj.aut.demosimpleapp.util;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Source of the AES keys used for encryption. New data is always encrypted with the active key;
+ * older data names the key it was encrypted with, so keys can be rotated without re-encrypting.
+ */
+public interface KeyProvider {
+
+    /**
+     * Key ID used for data that was written before key IDs existed
+     */
+    String DEFAULT_KEY_ID = "default";
+
+    /**
+     * @return ID of the key used for new encryptions
+     */
+    String getActiveKeyId();
+
+    /**
+     * Look up a key by ID
+     * @param keyId Key ID stored alongside the encrypted data
+     * @return The key
+     * @throws IllegalArgumentException if no key with that ID is known
+     */
+    SecretKey getKey(String keyId);
+
+    default SecretKey getActiveKey() {
+        return getKey(getActiveKeyId());
+    }
+}
@@ -0,0 +1,78 @@
+package utcluj.aut.demosimpleapp.util;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Keys stored as {@code <keyId>.key} files in a directory. All keys in the directory can decrypt,
+ * only the active one is used to encrypt. To rotate, configure a new active key ID (its file is generated
+ * on startup if missing) and keep the old files in place for as long as data encrypted with them exists.
+ *
+ * Data written before key IDs existed is decrypted with {@code default.key}, so the old single key file
+ * should be copied into the keyring under that name.
+ */
+public class KeyringKeyProvider implements KeyProvider {
+
+    private static final String KEY_FILE_SUFFIX = ".key";
+    private static final Pattern KEY_ID_PATTERN = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    private final String activeKeyId;
+    private final Map<String, SecretKey> keys;
+
+    public KeyringKeyProvider(Path keyringDir, String activeKeyId) {
+        if (!KEY_ID_PATTERN.matcher(activeKeyId).matches()) {
+            throw new IllegalArgumentException("Invalid encryption key ID: " + activeKeyId);
+        }
+        this.activeKeyId = activeKeyId;
+
+        Map<String, SecretKey> loaded = new HashMap<>();
+        try {
+            Files.createDirectories(keyringDir);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(keyringDir, "*" + KEY_FILE_SUFFIX)) {
+                for (Path file : files) {
+                    String fileName = file.getFileName().toString();
+                    String keyId = fileName.substring(0, fileName.length() - KEY_FILE_SUFFIX.length());
+                    if (KEY_ID_PATTERN.matcher(keyId).matches()) {
+                        loaded.put(keyId, EncryptionUtil.loadOrGenerateKey(file));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read keyring directory " + keyringDir, e);
+        }
+
+        // Generate the active key the first time it is configured
+        loaded.computeIfAbsent(activeKeyId,
+                id -> EncryptionUtil.loadOrGenerateKey(keyringDir.resolve(id + KEY_FILE_SUFFIX)));
+        this.keys = Collections.unmodifiableMap(loaded);
+    }
+
+    @Override
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
+
+    @Override
+    public SecretKey getKey(String keyId) {
+        SecretKey key = keys.get(keyId);
+        if (key == null) {
+            throw new IllegalArgumentException("Unknown encryption key: " + keyId);
+        }
+        return key;
+    }
+
+    /**
+     * @return IDs of all keys in the keyring
+     */
+    public Set<String> getKeyIds() {
+        return keys.keySet();
+    }
+}
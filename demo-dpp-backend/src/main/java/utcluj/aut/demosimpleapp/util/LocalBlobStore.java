@@ -0,0 +1,166 @@
+package utcluj.aut.demosimpleapp.util;
+
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Blob store on the local filesystem. A key maps to the file at that relative path under the root directory;
+ * uploads are staged in a .staging directory under the root so they can be moved into place atomically.
+ */
+public class LocalBlobStore implements BlobStore {
+
+    private static final String STAGING_DIR = ".staging";
+
+    private final Path root;
+    private final Path stagingDir;
+
+    public LocalBlobStore(Path root) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.stagingDir = this.root.resolve(STAGING_DIR);
+        Files.createDirectories(stagingDir);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public void put(String key, Path file) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Staged on another filesystem: copy next to the target first, so readers never see a partial file
+            Path temp = Files.createTempFile(target.getParent(), ".put-", ".tmp");
+            try {
+                Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("No blob stored under " + key);
+        }
+        channel.position(offset);
+        InputStream in = Channels.newInputStream(channel);
+        return length < 0 ? in : new LimitedInputStream(in, length);
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        Path file = resolve(key);
+        return Files.isRegularFile(file) ? Files.size(file) : -1;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Path file = resolve(key);
+        Files.deleteIfExists(file);
+        // Remove shard directories left empty, but never the root itself
+        for (Path dir = file.getParent(); !dir.equals(root); dir = dir.getParent()) {
+            if (!Files.isDirectory(dir)) {
+                // Already removed along with an earlier copy of the blob
+                continue;
+            }
+            try (var entries = Files.list(dir)) {
+                if (entries.findAny().isPresent()) {
+                    break;
+                }
+            }
+            try {
+                Files.delete(dir);
+            } catch (IOException e) {
+                // A concurrent upload may have just added a file
+                break;
+            }
+        }
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return resolve(key);
+    }
+
+    @Override
+    public Path createStagingFile() throws IOException {
+        return Files.createTempFile(stagingDir, "upload-", ".tmp");
+    }
+
+    private Path resolve(String key) {
+        Path file = root.resolve(key).normalize();
+        // Make sure the key stays inside the root directory (security check)
+        if (!file.startsWith(root) || file.equals(root) || file.startsWith(stagingDir)) {
+            throw new SecurityException("Invalid blob key: " + key);
+        }
+        return file;
+    }
+
+    /**
+     * Stream that ends after a fixed number of bytes of the underlying stream
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return len == 0 ? 0 : -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+    }
+}
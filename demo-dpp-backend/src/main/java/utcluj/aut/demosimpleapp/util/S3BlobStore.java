@@ -0,0 +1,136 @@
+package utcluj.aut.demosimpleapp.util;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Blob store in a bucket of an S3-compatible object store (AWS S3, MinIO, Ceph, ...).
+ * Keys are stored as object names under an optional prefix; reads from an offset use ranged GETs.
+ */
+public class S3BlobStore implements BlobStore, AutoCloseable {
+
+    private final S3Client client;
+    private final String bucket;
+    private final String prefix;
+
+    /**
+     * @param client Client for the object store; closed with this store
+     * @param prefix Prefix for object names, e.g. "uploads/", or an empty string
+     */
+    public S3BlobStore(S3Client client, String bucket, String prefix) {
+        this.client = client;
+        this.bucket = bucket;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void put(String key, Path file) throws IOException {
+        try {
+            client.putObject(request -> request.bucket(bucket).key(prefix + key), RequestBody.fromFile(file));
+        } catch (SdkException e) {
+            throw new IOException("Failed to store " + key + " in bucket " + bucket, e);
+        }
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        if (length == 0) {
+            return InputStream.nullInputStream();
+        }
+        GetObjectRequest.Builder request = GetObjectRequest.builder().bucket(bucket).key(prefix + key);
+        if (offset > 0 || length > 0) {
+            request.range("bytes=" + offset + "-" + (length > 0 ? String.valueOf(offset + length - 1) : ""));
+        }
+        try {
+            return new AbortingInputStream(client.getObject(request.build()));
+        } catch (NoSuchKeyException e) {
+            throw new FileNotFoundException("No blob stored under " + key);
+        } catch (SdkException e) {
+            throw new IOException("Failed to read " + key + " from bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        try {
+            return client.headObject(request -> request.bucket(bucket).key(prefix + key)).contentLength();
+        } catch (NoSuchKeyException e) {
+            return -1;
+        } catch (S3Exception e) {
+            // HEAD responses have no body, so some stores only report a bare 404
+            if (e.statusCode() == 404) {
+                return -1;
+            }
+            throw new IOException("Failed to look up " + key + " in bucket " + bucket, e);
+        } catch (SdkException e) {
+            throw new IOException("Failed to look up " + key + " in bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            client.deleteObject(request -> request.bucket(bucket).key(prefix + key));
+        } catch (SdkException e) {
+            throw new IOException("Failed to delete " + key + " from bucket " + bucket, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    /**
+     * Response stream that drops the connection when closed before the end, instead of reading the rest
+     * of the object just to return the connection to the pool
+     */
+    private static final class AbortingInputStream extends FilterInputStream {
+
+        private final ResponseInputStream<GetObjectResponse> response;
+        private long remaining;
+
+        AbortingInputStream(ResponseInputStream<GetObjectResponse> response) {
+            super(response);
+            this.response = response;
+            Long contentLength = response.response().contentLength();
+            this.remaining = contentLength != null ? contentLength : Long.MAX_VALUE;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            remaining = b < 0 ? 0 : remaining - 1;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            remaining = n < 0 ? 0 : remaining - n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (remaining > 0) {
+                response.abort();
+            }
+            super.close();
+        }
+    }
+}
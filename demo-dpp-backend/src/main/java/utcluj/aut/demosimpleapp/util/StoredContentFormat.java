@@ -0,0 +1,180 @@
+package utcluj.aut.demosimpleapp.util;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Layout of stored uploads: a small header saying how the content is encoded, followed by the content,
+ * compressed first and then, if the encrypted flag is set, encrypted with {@link ChunkedEncryptionFormat}:
+ * <pre>
+ *   header:  MAGIC(4) | VERSION(1) | CODEC(1) | FLAGS(1) | CONTENT_LENGTH(8)
+ *   payload: [chunked encryption of] codec-compressed content
+ * </pre>
+ * CONTENT_LENGTH is the size of the uncompressed content, so it can be served decompressed with a known length.
+ * Compressing before encrypting is what makes compression useful at all, since ciphertext does not compress.
+ * Files stored without this header are raw or chunked-encrypted content without compression.
+ */
+public final class StoredContentFormat {
+
+    static final byte[] MAGIC = {(byte) 0x89, 'D', 'P', 'C'};
+    static final byte VERSION = 1;
+    public static final int HEADER_LENGTH = MAGIC.length + 1 + 1 + 1 + Long.BYTES;
+    private static final int CONTENT_LENGTH_OFFSET = HEADER_LENGTH - Long.BYTES;
+
+    static final byte FLAG_ENCRYPTED = 0x01;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private StoredContentFormat() {
+    }
+
+    /**
+     * Compression applied to stored content, named by its HTTP content-coding
+     */
+    public enum Codec {
+        NONE(0, null, ""),
+        GZIP(1, "gzip", ".gz"),
+        ZSTD(2, "zstd", ".zst");
+
+        private final int id;
+        private final String contentEncoding;
+        private final String keySuffix;
+
+        Codec(int id, String contentEncoding, String keySuffix) {
+            this.id = id;
+            this.contentEncoding = contentEncoding;
+            this.keySuffix = keySuffix;
+        }
+
+        /**
+         * @return The HTTP Content-Encoding of compressed content, or null for NONE
+         */
+        public String getContentEncoding() {
+            return contentEncoding;
+        }
+
+        /**
+         * @return Suffix added to storage keys of content compressed with this codec
+         */
+        public String getKeySuffix() {
+            return keySuffix;
+        }
+
+        /**
+         * Look up a codec by its configuration name (none, gzip or zstd)
+         * @throws IllegalArgumentException for unknown names
+         */
+        public static Codec fromName(String name) {
+            for (Codec codec : values()) {
+                if (codec.name().equalsIgnoreCase(name)) {
+                    return codec;
+                }
+            }
+            throw new IllegalArgumentException("Unknown compression codec: " + name + " (none, gzip or zstd)");
+        }
+
+        static Codec fromId(int id) throws IOException {
+            for (Codec codec : values()) {
+                if (codec.id == id) {
+                    return codec;
+                }
+            }
+            throw new IOException("Unknown compression codec in stored file header: " + id);
+        }
+
+        /**
+         * Wrap a stream so content written to it is compressed; closing it closes the underlying stream
+         */
+        public OutputStream compress(OutputStream out) throws IOException {
+            return switch (this) {
+                case NONE -> out;
+                case GZIP -> new GZIPOutputStream(out, BUFFER_SIZE);
+                case ZSTD -> new ZstdOutputStream(out);
+            };
+        }
+
+        /**
+         * Wrap a stream of compressed content so reading it returns the original content
+         */
+        public InputStream decompress(InputStream in) throws IOException {
+            return switch (this) {
+                case NONE -> in;
+                case GZIP -> new GZIPInputStream(in, BUFFER_SIZE);
+                case ZSTD -> new ZstdInputStream(in);
+            };
+        }
+    }
+
+    /**
+     * Parsed header
+     * @param codec Compression of the payload
+     * @param encrypted Whether the compressed payload is encrypted
+     * @param contentLength Size of the original, uncompressed content
+     */
+    public record Header(Codec codec, boolean encrypted, long contentLength) {
+    }
+
+    /**
+     * Write a header whose content length is filled in later with {@link #writeContentLength(Path, long)}
+     */
+    public static void writeHeader(OutputStream out, Codec codec, boolean encrypted) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(MAGIC);
+        data.writeByte(VERSION);
+        data.writeByte(codec.id);
+        data.writeByte(encrypted ? FLAG_ENCRYPTED : 0);
+        data.writeLong(0);
+        data.flush();
+    }
+
+    /**
+     * Record the content length in the header of a file written with {@link #writeHeader}
+     */
+    public static void writeContentLength(Path file, long contentLength) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(contentLength).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, CONTENT_LENGTH_OFFSET + buffer.position());
+            }
+        }
+    }
+
+    /**
+     * Read the header from the start of a stored file
+     * @param in Stream positioned at the start of the file
+     * @return The parsed header, or null if the file does not start with one
+     */
+    public static Header readHeader(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = in.readNBytes(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            return null;
+        }
+        try {
+            byte version = data.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported stored file version: " + version);
+            }
+            Codec codec = Codec.fromId(data.readUnsignedByte());
+            byte flags = data.readByte();
+            long contentLength = data.readLong();
+            return new Header(codec, (flags & FLAG_ENCRYPTED) != 0, contentLength);
+        } catch (EOFException e) {
+            throw new IOException("Truncated stored file header", e);
+        }
+    }
+}
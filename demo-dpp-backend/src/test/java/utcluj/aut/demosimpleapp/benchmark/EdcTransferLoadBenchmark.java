@@ -0,0 +1,93 @@
+package utcluj.aut.demosimpleapp.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.web.client.RestTemplate;
+import utcluj.aut.demosimpleapp.util.BoundedExecutor;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Load test for concurrent EDC transfer initiation against a stub connector that answers after a fixed latency.
+ * Starts the given number of transfers at once and reports how long until each transfer's connector call has
+ * returned, for:
+ * <ul>
+ *   <li>the previous path: blocking calls on a ForkJoin pool sized like the common pool (cores - 1)</li>
+ *   <li>the bounded executor on platform threads (edc.transfer.max-concurrency=64)</li>
+ *   <li>the bounded executor on virtual threads, allowing every transfer to run at once</li>
+ * </ul>
+ * Use well over 64 transfers to see the platform pool's limit. Run with:
+ * <pre>
+ *   mvn test-compile dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/test-classpath.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *       utcluj.aut.demosimpleapp.benchmark.EdcTransferLoadBenchmark 1000 100 3
+ * </pre>
+ * Arguments: number of transfers, connector latency in ms, parallelism of the previous pool (defaults to
+ * cores - 1, like the common pool).
+ */
+public class EdcTransferLoadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int transfers = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int latencyMs = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        // Set explicitly because the common pool falls back to a thread per task below two cores
+        int previousParallelism = args.length > 2 ? Integer.parseInt(args[2])
+                : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+        HttpServer connector = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        connector.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        connector.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        connector.start();
+        String url = "http://127.0.0.1:" + connector.getAddress().getPort() + "/transfers";
+        RestTemplate restTemplate = new RestTemplate();
+
+        System.out.printf("%d transfers, connector latency %d ms, %d cores%n",
+                transfers, latencyMs, Runtime.getRuntime().availableProcessors());
+
+        Runnable transfer = () -> restTemplate.postForEntity(url, "{}", String.class);
+        ForkJoinPool previousPool = new ForkJoinPool(previousParallelism);
+        run("fork-join (" + previousParallelism + ")", transfers, previousPool, transfer);
+        previousPool.shutdown();
+        try (BoundedExecutor platform = new BoundedExecutor("bench-platform", false, 64, transfers)) {
+            run("bounded, platform (64)", transfers, platform, transfer);
+        }
+        try (BoundedExecutor virtual = new BoundedExecutor("bench-virtual", true, transfers, transfers)) {
+            run("bounded, virtual (" + transfers + ")", transfers, virtual, transfer);
+        }
+        connector.stop(0);
+    }
+
+    private static void run(String label, int transfers, Executor executor, Runnable transfer) {
+        long start = System.nanoTime();
+        long[] initiatedMs = new long[transfers];
+        List<CompletableFuture<?>> futures = new ArrayList<>(transfers);
+        for (int i = 0; i < transfers; i++) {
+            int index = i;
+            futures.add(CompletableFuture.runAsync(() -> {
+                transfer.run();
+                initiatedMs[index] = (System.nanoTime() - start) / 1_000_000;
+            }, executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        long totalMs = (System.nanoTime() - start) / 1_000_000;
+
+        Arrays.sort(initiatedMs);
+        System.out.printf("%-26s total %6d ms  %8.1f transfers/s  p50 %6d ms  p99 %6d ms%n", label, totalMs,
+                transfers * 1000.0 / totalMs, initiatedMs[transfers / 2], initiatedMs[transfers * 99 / 100]);
+    }
+}
@@ -0,0 +1,93 @@
+package utcluj.aut.demosimpleapp.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import utcluj.aut.demosimpleapp.service.EncryptionService;
+import utcluj.aut.demosimpleapp.util.KeyringKeyProvider;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares per-call {@code Cipher.getInstance} (the original EncryptionUtil behaviour) with the pooled
+ * ciphers of {@link EncryptionService}. Run with:
+ * <pre>
+ *   mvn test-compile dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/test-classpath.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *       utcluj.aut.demosimpleapp.benchmark.EncryptionBenchmark 4
+ * </pre>
+ * The number of benchmark threads can be passed as the first argument.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptionBenchmark {
+
+    private static final String PAYLOAD = "{\"serialNumber\":\"SN12345\",\"manufacturer\":\"Example Manufacturer\"}";
+
+    private EncryptionService encryptionService;
+    private SecretKey key;
+    private String encrypted;
+    private final SecureRandom random = new SecureRandom();
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyringKeyProvider keyProvider = new KeyringKeyProvider(Files.createTempDirectory("keyring"), "bench");
+        key = keyProvider.getActiveKey();
+        encryptionService = new EncryptionService(keyProvider);
+        encrypted = encryptionService.encrypt(PAYLOAD);
+    }
+
+    @Benchmark
+    public String encryptEcbWithNewCipherPerCall() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        return Base64.getEncoder().encodeToString(cipher.doFinal(PAYLOAD.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public byte[] encryptGcmWithNewCipherPerCall() throws Exception {
+        byte[] nonce = new byte[12];
+        random.nextBytes(nonce);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, nonce));
+        return cipher.doFinal(PAYLOAD.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public String encryptWithPooledCipher() {
+        return encryptionService.encrypt(PAYLOAD);
+    }
+
+    @Benchmark
+    public String decryptWithPooledCipher() {
+        return encryptionService.decrypt(encrypted);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        new Runner(new OptionsBuilder()
+                .include(EncryptionBenchmark.class.getSimpleName())
+                .threads(threads)
+                .build()).run();
+    }
+}
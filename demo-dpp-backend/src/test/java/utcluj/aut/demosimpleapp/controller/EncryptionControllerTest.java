@@ -0,0 +1,47 @@
+package utcluj.aut.demosimpleapp.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import utcluj.aut.demosimpleapp.service.EncryptionBatchService;
+import utcluj.aut.demosimpleapp.service.EncryptionService;
+import utcluj.aut.demosimpleapp.util.KeyringKeyProvider;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EncryptionControllerTest {
+
+    @TempDir
+    Path keyringDir;
+
+    @Test
+    void batchesOverTheLimitAreRejectedWith413() {
+        EncryptionBatchService batchService = new EncryptionBatchService();
+        ReflectionTestUtils.setField(batchService, "encryptionService",
+                new EncryptionService(new KeyringKeyProvider(keyringDir, "test")));
+        ReflectionTestUtils.setField(batchService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(batchService, "maxBatchSize", 2);
+        EncryptionController controller = new EncryptionController();
+        ReflectionTestUtils.setField(controller, "encryptionBatchService", batchService);
+
+        try {
+            ResponseEntity<?> accepted = controller.encryptBatch(Collections.nCopies(2, Map.of("plainText", "x")));
+            ResponseEntity<?> rejected = controller.decryptBatch(Collections.nCopies(3, Map.of("encryptedText", "x")));
+
+            assertEquals(HttpStatus.OK, accepted.getStatusCode());
+            assertEquals(2, ((List<?>) accepted.getBody()).size());
+            assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, rejected.getStatusCode());
+            assertEquals("Batch size 3 exceeds the limit of 2", ((Map<?, ?>) rejected.getBody()).get("error"));
+        } finally {
+            batchService.shutdown();
+        }
+    }
+}
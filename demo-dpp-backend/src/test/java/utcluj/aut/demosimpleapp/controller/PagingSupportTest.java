@@ -0,0 +1,20 @@
+package utcluj.aut.demosimpleapp.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PagingSupportTest {
+
+    @Test
+    void keysetPagesOnlyAcceptAscendingIdOrder() {
+        assertDoesNotThrow(() -> PagingSupport.checkKeysetSort(Sort.by("id")));
+        assertDoesNotThrow(() -> PagingSupport.checkKeysetSort(Sort.unsorted()));
+        assertThrows(IllegalArgumentException.class,
+                () -> PagingSupport.checkKeysetSort(Sort.by(Sort.Direction.DESC, "id")));
+        assertThrows(IllegalArgumentException.class,
+                () -> PagingSupport.checkKeysetSort(Sort.by("productName", "id")));
+    }
+}
@@ -0,0 +1,67 @@
+package utcluj.aut.demosimpleapp.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import utcluj.aut.demosimpleapp.config.JsonFunctionsInitializer;
+import utcluj.aut.demosimpleapp.model.DataTransfer;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@Import(JsonFunctionsInitializer.class)
+class DataTransferRepositoryTest {
+
+    @Autowired
+    private DataTransferRepository dataTransferRepository;
+
+    @BeforeEach
+    void setUp() {
+        save("battery-acme", "{\"productType\": \"Battery\", \"manufacturer\": {\"name\": \"ACME\", \"country\": \"RO\"}}");
+        save("motor-acme", "{\"productType\": \"Motor\", \"manufacturer\": {\"name\": \"ACME\"}, \"tags\": [\"eu\"]}");
+        save("battery-other", "{\"productType\": \"Battery\", \"manufacturer\": {\"name\": \"Other\"}}");
+        save("sensor", "{\"reading\": {\"temperature\": 21, \"active\": true}, \"modelNumber\": \"42\"}");
+    }
+
+    @Test
+    void filtersByTopLevelField() {
+        assertEquals(List.of("battery-acme", "battery-other"),
+                referenceIds(Map.of("productType", "Battery")));
+    }
+
+    @Test
+    void filtersByNestedFieldsTogether() {
+        assertEquals(List.of("motor-acme"),
+                referenceIds(Map.of("manufacturer.name", "ACME", "productType", "Motor")));
+        assertEquals(List.of(), referenceIds(Map.of("manufacturer.name", "ACM")));
+    }
+
+    @Test
+    void filtersByNumericAndBooleanFields() {
+        assertEquals(List.of("sensor"), referenceIds(Map.of("reading.temperature", "21", "reading.active", "true")));
+        assertEquals(List.of("sensor"), referenceIds(Map.of("reading.temperature", "21.0")));
+        assertEquals(List.of(), referenceIds(Map.of("reading.active", "false")));
+        // A number-like value still matches a string field
+        assertEquals(List.of("sensor"), referenceIds(Map.of("modelNumber", "42", "reading.active", "true")));
+    }
+
+    private void save(String referenceId, String jsonData) {
+        dataTransferRepository.save(new DataTransfer(referenceId, LocalDateTime.now(), referenceId, jsonData));
+    }
+
+    private List<String> referenceIds(Map<String, String> fields) {
+        return dataTransferRepository.findAll(DataTransferSpecifications.jsonFieldsEqual(fields)).stream()
+                .map(DataTransfer::getReferenceId)
+                .sorted()
+                .toList();
+    }
+}
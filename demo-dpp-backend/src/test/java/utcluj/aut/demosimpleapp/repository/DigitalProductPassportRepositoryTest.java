@@ -0,0 +1,151 @@
+package utcluj.aut.demosimpleapp.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import utcluj.aut.demosimpleapp.model.DigitalProductPassport;
+import utcluj.aut.demosimpleapp.model.RepairEntry;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+class DigitalProductPassportRepositoryTest {
+
+    private static final int PASSPORTS = 1_000;
+    private static final int REPAIRS_PER_PASSPORT = 2;
+
+    @Autowired
+    private DigitalProductPassportRepository passportRepository;
+
+    @Autowired
+    private RepairEntryRepository repairEntryRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < PASSPORTS; i++) {
+            DigitalProductPassport passport = new DigitalProductPassport();
+            passport.setProductName("Product " + i);
+            passport.setSerialNumber("SN" + i);
+            for (int r = 0; r < REPAIRS_PER_PASSPORT; r++) {
+                RepairEntry repair = new RepairEntry();
+                repair.setRepairDate(LocalDateTime.of(2024, 1, 1 + r, 0, 0));
+                repair.setDescription("Repair " + r);
+                repair.setPassport(passport);
+                passport.getRepairHistory().add(repair);
+            }
+            entityManager.persist(passport);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void findAllWithRepairHistoryUsesOneStatement() {
+        List<DigitalProductPassport> passports = passportRepository.findAllWithRepairHistory();
+
+        assertEquals(PASSPORTS * REPAIRS_PER_PASSPORT, countRepairs(passports));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findAllLoadsRepairHistoryInBatches() {
+        List<DigitalProductPassport> passports = passportRepository.findAll();
+
+        assertEquals(PASSPORTS * REPAIRS_PER_PASSPORT, countRepairs(passports));
+        // One query for the passports plus one per @BatchSize group of repair collections
+        assertEquals(1 + PASSPORTS / 100, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findWithRepairHistoryBySerialNumberUsesOneStatement() {
+        DigitalProductPassport passport = passportRepository.findWithRepairHistoryBySerialNumber("SN42").orElseThrow();
+
+        assertEquals(REPAIRS_PER_PASSPORT, passport.getRepairHistory().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void versionIncreasesWhenPassportChanges() {
+        DigitalProductPassport passport = passportRepository.findWithRepairHistoryBySerialNumber("SN7").orElseThrow();
+        assertEquals(0, passport.getVersion());
+
+        passport.setCsvFileName("readings.csv");
+        entityManager.flush();
+
+        assertEquals(1, passport.getVersion());
+        assertNotNull(passport.getUpdatedAt());
+    }
+
+    @Test
+    void repairEntryIsAddedWithoutLoadingThePassport() {
+        Long id = passportRepository.findWithRepairHistoryBySerialNumber("SN9").orElseThrow().getId();
+        entityManager.clear();
+        statistics.clear();
+
+        assertEquals(1, passportRepository.markChanged(List.of(id), LocalDateTime.now()));
+        RepairEntry repair = new RepairEntry();
+        repair.setRepairDate(LocalDateTime.of(2023, 12, 31, 0, 0));
+        repair.setPassport(passportRepository.getReferenceById(id));
+        repairEntryRepository.save(repair);
+        entityManager.flush();
+
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+        Page<RepairEntry> page = repairEntryRepository.findByPassportId(id, PageRequest.of(0, 2, Sort.by("repairDate")));
+        assertEquals(REPAIRS_PER_PASSPORT + 1, page.getTotalElements());
+        assertEquals(repair.getRepairDate(), page.getContent().get(0).getRepairDate());
+        entityManager.clear();
+        assertEquals(1, passportRepository.findById(id).orElseThrow().getVersion());
+    }
+
+    @Test
+    void projectionsReadOnlyTheirColumns() {
+        Specification<DigitalProductPassport> filter = DigitalProductPassportSpecifications.idGreaterThan(0L);
+
+        List<Map<String, Object>> rows = passportRepository.findFields(filter, List.of("id", "serialNumber"),
+                PageRequest.of(1, 10, Sort.by("id")));
+        List<PassportSummary> summaries = passportRepository.findProjectedBy(filter, PassportSummary.class,
+                PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "serialNumber")));
+
+        assertEquals(10, rows.size());
+        assertEquals(List.of("id", "serialNumber"), List.copyOf(rows.get(0).keySet()));
+        assertEquals("SN10", rows.get(0).get("serialNumber"));
+        assertEquals("SN999", summaries.get(0).getSerialNumber());
+        assertEquals("Product 999", summaries.get(0).getProductName());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+    }
+
+    private static int countRepairs(List<DigitalProductPassport> passports) {
+        return passports.stream().mapToInt(passport -> passport.getRepairHistory().size()).sum();
+    }
+}
@@ -0,0 +1,43 @@
+package utcluj.aut.demosimpleapp.service;
+
+import org.junit.jupiter.api.Test;
+import utcluj.aut.demosimpleapp.model.DataTransfer;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class DataTransferCompletionRegistryTest {
+
+    private final DataTransferCompletionRegistry registry = new DataTransferCompletionRegistry();
+
+    @Test
+    void completesAllWaitersForTheReferenceId() {
+        CompletableFuture<DataTransfer> first = registry.register("p1");
+        CompletableFuture<DataTransfer> second = registry.register("p1");
+        CompletableFuture<DataTransfer> other = registry.register("p2");
+
+        DataTransfer transfer = new DataTransfer("t1", LocalDateTime.now(), "p1", "{}");
+        registry.complete(transfer);
+
+        assertSame(transfer, first.join());
+        assertSame(transfer, second.join());
+        assertFalse(other.isDone());
+        assertEquals(1, registry.getWaitingCount());
+    }
+
+    @Test
+    void timedOutWaitersAreUnregistered() {
+        DataTransfer transfer = registry.register("p1")
+                .completeOnTimeout(null, 10, TimeUnit.MILLISECONDS)
+                .join();
+
+        assertNull(transfer);
+        assertEquals(0, registry.getWaitingCount());
+    }
+}
@@ -0,0 +1,110 @@
+package utcluj.aut.demosimpleapp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import utcluj.aut.demosimpleapp.config.JsonFunctionsInitializer;
+import utcluj.aut.demosimpleapp.model.DataTransfer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@Import({DataTransferExportService.class, JsonFunctionsInitializer.class, DataTransferExportServiceTest.Config.class})
+class DataTransferExportServiceTest {
+
+    private static final int ROWS = 20;
+
+    @Autowired
+    private DataTransferExportService exportService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper().findAndRegisterModules();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        // Rows larger than the generator's buffer, so the output is written while the rows are read
+        String payload = "{\"payload\": \"" + "x".repeat(10_000) + "\"}";
+        for (int i = 0; i < ROWS; i++) {
+            entityManager.persist(new DataTransfer("t" + i, LocalDateTime.now(), "p" + i, payload));
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void ndjsonHasOneTransferPerLineAndKeepsNoRowsManaged() throws IOException {
+        RecordingStream out = new RecordingStream();
+
+        exportService.exportAll(DataTransferExportService.Format.NDJSON, out);
+
+        String ndjson = out.toString(StandardCharsets.UTF_8);
+        assertTrue(ndjson.endsWith("\n"));
+        String[] lines = ndjson.split("\n");
+        assertEquals(ROWS, lines.length);
+        for (int i = 0; i < ROWS; i++) {
+            JsonNode transfer = objectMapper.readTree(lines[i]);
+            assertEquals("t" + i, transfer.get("transferId").asText());
+        }
+        assertTrue(out.managedDuringWrites.size() > 1, "writes " + out.managedDuringWrites.size());
+        assertTrue(out.managedDuringWrites.stream().allMatch(managed -> managed <= 1),
+                "managed entities " + out.managedDuringWrites);
+        assertEquals(1, out.flushes);
+        assertEquals(0, managedEntities());
+    }
+
+    private int managedEntities() {
+        return entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount();
+    }
+
+    /**
+     * Records how many entities are managed at every write, and counts flushes
+     */
+    private class RecordingStream extends ByteArrayOutputStream {
+
+        private final List<Integer> managedDuringWrites = new ArrayList<>();
+        private int flushes;
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            managedDuringWrites.add(managedEntities());
+            super.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushes++;
+            super.flush();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package utcluj.aut.demosimpleapp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+import utcluj.aut.demosimpleapp.model.DataTransfer;
+import utcluj.aut.demosimpleapp.repository.DataTransferRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DataTransferIngestionServiceTest {
+
+    @TempDir
+    private Path dir;
+
+    private final DataTransferRepository repository = mock(DataTransferRepository.class);
+    private final DataTransferCompletionRegistry completionRegistry = new DataTransferCompletionRegistry();
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<String> saved = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicBoolean databaseDown = new AtomicBoolean();
+
+    private DataTransferIngestionService ingestion;
+
+    @AfterEach
+    void tearDown() throws InterruptedException, IOException {
+        ingestion.shutdown();
+    }
+
+    @Test
+    void keepsTransfersInTheSpoolUntilTheDatabaseTakesThem() throws Exception {
+        mockSaves();
+        ingestion = start();
+        databaseDown.set(true);
+        CompletableFuture<DataTransfer> completed = completionRegistry.register("p2");
+
+        ingestion.submit(transfer("t1", "p1"));
+        ingestion.submit(transfer("duplicate", "p1"));
+        ingestion.submit(transfer("t2", "p2"));
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        assertEquals(3, Files.readAllLines(spool()).size());
+        assertTrue(saved.isEmpty());
+        // Batches failing for lack of a connection are retried whole, not row by row
+        verify(repository, never()).save(any());
+
+        databaseDown.set(false);
+        assertEquals("t2", completed.get(5, TimeUnit.SECONDS).getTransferId());
+        await(() -> spool().toFile().length() == 0);
+        assertEquals(List.of("t1", "t2"), saved);
+        List<String> rejected = Files.readAllLines(Path.of(spool() + ".rejected"));
+        assertEquals("duplicate", objectMapper.readValue(rejected.get(0), DataTransfer.class).getTransferId());
+    }
+
+    @Test
+    void replaysTransfersLeftInTheSpoolAndRefusesSubmitsAfterShutdown() throws Exception {
+        mockSaves();
+        when(repository.findExistingTransferIds(any())).thenReturn(Set.of("t1"));
+        Files.write(spool(), List.of(
+                objectMapper.writeValueAsString(transfer("t1", "p1")),
+                objectMapper.writeValueAsString(transfer("t2", "p1")),
+                "{\"transferId\": \"torn"));
+
+        ingestion = start();
+
+        assertEquals(List.of("t2"), saved);
+        assertEquals(0, Files.size(spool()));
+
+        ingestion.shutdown();
+        assertThrows(IllegalStateException.class, () -> ingestion.submit(transfer("t3", "p1")));
+    }
+
+    private void mockSaves() {
+        when(repository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            List<DataTransfer> batch = new ArrayList<>();
+            invocation.<Iterable<DataTransfer>>getArgument(0).forEach(batch::add);
+            if (databaseDown.get()) {
+                throw new CannotCreateTransactionException("Database is down");
+            }
+            if (batch.stream().anyMatch(t -> t.getTransferId().equals("duplicate"))) {
+                throw new DataIntegrityViolationException("Duplicate transfer ID");
+            }
+            batch.forEach(t -> saved.add(t.getTransferId()));
+            return batch;
+        });
+        when(repository.save(any())).thenAnswer(invocation -> {
+            DataTransfer transfer = invocation.getArgument(0);
+            if (databaseDown.get()) {
+                throw new CannotCreateTransactionException("Database is down");
+            }
+            if (transfer.getTransferId().equals("duplicate")) {
+                throw new DataIntegrityViolationException("Duplicate transfer ID");
+            }
+            saved.add(transfer.getTransferId());
+            return transfer;
+        });
+    }
+
+    private DataTransferIngestionService start() throws IOException {
+        DataTransferIngestionService service = new DataTransferIngestionService();
+        ReflectionTestUtils.setField(service, "dataTransferRepository", repository);
+        ReflectionTestUtils.setField(service, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(service, "completionRegistry", completionRegistry);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "queueCapacity", 100);
+        ReflectionTestUtils.setField(service, "batchSize", 10);
+        ReflectionTestUtils.setField(service, "flushIntervalMs", 10L);
+        ReflectionTestUtils.setField(service, "spoolFile", spool().toString());
+        service.start();
+        return service;
+    }
+
+    private Path spool() {
+        return dir.resolve("spool.ndjson");
+    }
+
+    private static DataTransfer transfer(String transferId, String referenceId) {
+        return new DataTransfer(transferId, LocalDateTime.of(2025, 4, 13, 10, 0), referenceId, "{}");
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package utcluj.aut.demosimpleapp.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import utcluj.aut.demosimpleapp.model.DataTransfer;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DataTransferSubscriptionServiceTest {
+
+    private static final Pattern EVENT_ID = Pattern.compile("id:(\\d+)");
+
+    private final DataTransferCompletionRegistry completionRegistry = new DataTransferCompletionRegistry();
+    private final DataTransferSubscriptionService subscriptions = new DataTransferSubscriptionService();
+    private final CountDownLatch unblock = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(subscriptions, "completionRegistry", completionRegistry);
+        ReflectionTestUtils.setField(subscriptions, "bufferSize", 100);
+        ReflectionTestUtils.setField(subscriptions, "maxPending", 5);
+        ReflectionTestUtils.setField(subscriptions, "heartbeatMs", 60_000L);
+        subscriptions.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        unblock.countDown();
+        subscriptions.shutdown();
+    }
+
+    @Test
+    void clientsThatStopReadingAreDisconnectedOnceWithoutDelayingOthers() throws InterruptedException {
+        List<RecordingEmitter> stuck = IntStream.range(0, 4).mapToObj(i -> new RecordingEmitter(unblock)).toList();
+        stuck.forEach(emitter -> subscriptions.subscribe(null, null, emitter));
+        RecordingEmitter reader = new RecordingEmitter(null);
+        subscriptions.subscribe(null, null, reader);
+
+        // More events than the stuck clients may have pending, each delivered to the reader before the next
+        for (int i = 1; i <= 12; i++) {
+            publish("t" + i, "p1");
+            reader.awaitIds(i);
+        }
+
+        assertEquals(IntStream.rangeClosed(1, 12).boxed().toList(), reader.ids);
+        stuck.forEach(emitter -> assertEquals(1, emitter.completions.get()));
+        assertEquals(1, subscriptions.getSubscriberCount());
+    }
+
+    @Test
+    void resumesAfterLastEventIdAndLongPollsForNewTransfers() throws Exception {
+        publish("t1", "p1");
+        publish("t2", "p2");
+        publish("t3", "p1");
+
+        RecordingEmitter resumed = new RecordingEmitter(null);
+        subscriptions.subscribe("p1", 1L, resumed);
+        resumed.awaitIds(1);
+        assertEquals(List.of(3), resumed.ids);
+
+        DataTransferSubscriptionService.Batch missed = subscriptions.poll(null, 1L, 1000).get(1, TimeUnit.SECONDS);
+        assertEquals(List.of("t2", "t3"), missed.transfers().stream().map(DataTransfer::getTransferId).toList());
+        assertEquals(3, missed.cursor());
+
+        CompletableFuture<DataTransferSubscriptionService.Batch> waiting = subscriptions.poll("p2", 3L, 5000);
+        assertFalse(waiting.isDone());
+        publish("t4", "p1");
+        publish("t5", "p2");
+        DataTransferSubscriptionService.Batch next = waiting.get(1, TimeUnit.SECONDS);
+        assertEquals(List.of("t5"), next.transfers().stream().map(DataTransfer::getTransferId).toList());
+        assertEquals(5, next.cursor());
+
+        DataTransferSubscriptionService.Batch timedOut = subscriptions.poll(null, 5L, 10).get(1, TimeUnit.SECONDS);
+        assertTrue(timedOut.transfers().isEmpty());
+        assertEquals(5, timedOut.cursor());
+    }
+
+    private void publish(String transferId, String referenceId) {
+        completionRegistry.complete(new DataTransfer(transferId, LocalDateTime.now(), referenceId, "{}"));
+    }
+
+    /**
+     * Records the IDs of the events sent to it; with a latch, every send blocks on it like a client that stopped
+     * reading
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final CountDownLatch blockUntil;
+        private final List<Integer> ids = new CopyOnWriteArrayList<>();
+        private final AtomicInteger completions = new AtomicInteger();
+
+        private RecordingEmitter(CountDownLatch blockUntil) {
+            this.blockUntil = blockUntil;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (blockUntil != null) {
+                try {
+                    blockUntil.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            for (DataWithMediaType data : builder.build()) {
+                Matcher matcher = EVENT_ID.matcher(data.getData().toString());
+                if (matcher.find()) {
+                    ids.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+
+        @Override
+        public void complete() {
+            completions.incrementAndGet();
+            super.complete();
+        }
+
+        void awaitIds(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (ids.size() < count) {
+                assertTrue(System.nanoTime() < deadline, "Timed out waiting for events");
+                TimeUnit.MILLISECONDS.sleep(5);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package utcluj.aut.demosimpleapp.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import utcluj.aut.demosimpleapp.model.DigitalProductPassport;
+import utcluj.aut.demosimpleapp.model.RepairEntry;
+import utcluj.aut.demosimpleapp.repository.DigitalProductPassportRepository;
+import utcluj.aut.demosimpleapp.repository.RepairEntryRepository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DigitalProductPassportServiceTest {
+
+    private final DigitalProductPassportRepository repository = mock(DigitalProductPassportRepository.class);
+    private final RepairEntryRepository repairEntryRepository = mock(RepairEntryRepository.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DigitalProductPassportService service = new DigitalProductPassportService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "passportRepository", repository);
+        ReflectionTestUtils.setField(service, "repairEntryRepository", repairEntryRepository);
+        ReflectionTestUtils.setField(service, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(service, "repairBatchMaxSize", 10);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "cacheEnabled", true);
+        ReflectionTestUtils.setField(service, "cacheMaxSize", 100L);
+        ReflectionTestUtils.setField(service, "cacheTtlSeconds", 60L);
+        service.initCache();
+
+        when(repository.findWithRepairHistoryById(1L)).thenAnswer(invocation -> Optional.of(passport()));
+        when(repository.findWithRepairHistoryBySerialNumber("SN1")).thenAnswer(invocation -> Optional.of(passport()));
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(repository.markChanged(eq(List.of(1L)), any())).thenReturn(1);
+        when(repairEntryRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void repeatedLookupsAreServedFromTheCache() {
+        DigitalProductPassport first = service.getPassportById(1L);
+        DigitalProductPassport second = service.getPassportById(1L);
+        service.getPassportBySerialNumber("SN1");
+        DigitalProductPassport bySerial = service.getPassportBySerialNumber("SN1");
+
+        assertSame(first, second);
+        assertSame(first, bySerial);
+        verify(repository, times(1)).findWithRepairHistoryById(1L);
+        verify(repository, times(1)).findWithRepairHistoryBySerialNumber("SN1");
+        assertEquals(2.0, meterRegistry.get("cache.gets").tag("cache", "passports").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void writesInvalidateThePassport() {
+        DigitalProductPassport cached = service.getPassportById(1L);
+
+        service.addRepairEntry(1L, new RepairEntry());
+        DigitalProductPassport reloaded = service.getPassportById(1L);
+
+        assertEquals(0, cached.getRepairHistory().size());
+        // The repair entry is inserted without loading the passport
+        verify(repository, times(2)).findWithRepairHistoryById(1L);
+        assertSame(reloaded, service.getPassportById(1L));
+    }
+
+    @Test
+    void recreatingAPassportWithAnotherSerialNumberInvalidatesTheOldOne() {
+        service.getPassportBySerialNumber("SN1");
+
+        DigitalProductPassport recreated = passport();
+        recreated.setSerialNumber("SN2");
+        service.createPassport(recreated);
+        when(repository.findWithRepairHistoryById(1L)).thenReturn(Optional.of(recreated));
+        when(repository.findWithRepairHistoryBySerialNumber("SN1")).thenReturn(Optional.empty());
+        when(repository.findWithRepairHistoryBySerialNumber("SN2")).thenReturn(Optional.of(recreated));
+
+        assertThrows(RuntimeException.class, () -> service.getPassportBySerialNumber("SN1"));
+        assertSame(recreated, service.getPassportBySerialNumber("SN2"));
+        assertSame(recreated, service.getPassportById(1L));
+    }
+
+    @Test
+    void csvETagDoesNotRevealTheContentHash() throws Exception {
+        ReflectionTestUtils.setField(service, "csvETagSecret", "secret");
+        service.initCsvETagKey();
+        DigitalProductPassport passport = passport();
+        String sha256 = "ab".repeat(32);
+        passport.setCsvSha256(sha256);
+
+        String eTag = service.csvETag(passport, null);
+        String gzipETag = service.csvETag(passport, "gzip");
+
+        assertFalse(eTag.contains(sha256));
+        assertEquals(eTag, service.csvETag(passport, null));
+        assertEquals(eTag.replace("\"", ""), gzipETag.replace("\"", "").replace("-gzip", ""));
+        assertFalse(new ObjectMapper().findAndRegisterModules().writeValueAsString(passport).contains(sha256));
+        assertThrows(IllegalArgumentException.class, () -> service.parseFields("csvSha256"));
+    }
+
+    @Test
+    void repairBatchWithUnknownPassportsSavesNothing() {
+        when(repository.markChanged(any(), any())).thenReturn(1);
+        when(repository.findExistingIds(any())).thenReturn(Set.of(1L));
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> service.addRepairEntries(List.of(
+                new DigitalProductPassportService.RepairBatch(1L, List.of(new RepairEntry())),
+                new DigitalProductPassportService.RepairBatch(2L, List.of(new RepairEntry())))));
+
+        assertEquals("Passports not found: [2]", error.getMessage());
+        verify(repairEntryRepository, never()).saveAll(any());
+    }
+
+    private static DigitalProductPassport passport() {
+        DigitalProductPassport passport = new DigitalProductPassport();
+        passport.setId(1L);
+        passport.setSerialNumber("SN1");
+        return passport;
+    }
+}
@@ -0,0 +1,58 @@
+package utcluj.aut.demosimpleapp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import utcluj.aut.demosimpleapp.config.EdcTransferProfileProperties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EdcTransferProfileRegistryTest {
+
+    private final EdcTransferProfileRegistry registry = new EdcTransferProfileRegistry();
+
+    @BeforeEach
+    void configure() {
+        EdcTransferProfileProperties properties = new EdcTransferProfileProperties();
+        properties.getProfiles().put("default", profile("http://connector-a/", "agreement-a", null));
+        properties.getProfiles().put("b", profile("http://connector-b", "agreement-b", "B-.*"));
+        ReflectionTestUtils.setField(registry, "properties", properties);
+        registry.init();
+    }
+
+    @Test
+    void templateSplicesTheEscapedId() throws Exception {
+        HttpEntity<String> request = registry.resolve(null, "1\"2").request("1\"2");
+
+        JsonNode body = new ObjectMapper().readTree(request.getBody());
+        assertEquals("agreement-a", body.get("contractAgreementId").asText());
+        assertEquals("id=1\"2",
+                body.get("transferProcessProperties").get("https://w3id.org/edc/v0.0.1/ns/queryParams").asText());
+        assertEquals("http://sink", body.get("dataSinkProperties").get("https://w3id.org/edc/v0.0.1/ns/baseUrl").asText());
+        assertEquals("key", request.getHeaders().getFirst("X-Api-Key"));
+    }
+
+    @Test
+    void routesByNameThenIdPatternThenDefault() {
+        assertEquals("b", registry.resolve(null, "B-17").getName());
+        assertEquals("default", registry.resolve(null, "17").getName());
+        assertEquals("default", registry.resolve("default", "B-17").getName());
+        assertEquals("http://connector-a/api/management/wrapper/ui/pages/contract-agreement-page/transfers",
+                registry.resolve(null, "17").getEndpoint().toString());
+        assertThrows(IllegalArgumentException.class, () -> registry.resolve("missing", "17"));
+    }
+
+    private static EdcTransferProfileProperties.Profile profile(String connectorUrl, String agreement, String idPattern) {
+        EdcTransferProfileProperties.Profile profile = new EdcTransferProfileProperties.Profile();
+        profile.setConnectorUrl(connectorUrl);
+        profile.setApiKey("key");
+        profile.setContractAgreementId(agreement);
+        profile.setDataSinkUrl("http://sink");
+        profile.setIdPattern(idPattern);
+        return profile;
+    }
+}
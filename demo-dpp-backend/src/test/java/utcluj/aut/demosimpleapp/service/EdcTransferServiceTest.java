@@ -0,0 +1,173 @@
+package utcluj.aut.demosimpleapp.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import utcluj.aut.demosimpleapp.config.EdcClientConfig;
+import utcluj.aut.demosimpleapp.config.EdcTransferProfileProperties;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs bulk transfers against a stub connector on a local port
+ */
+class EdcTransferServiceTest {
+
+    private static final Pattern ID_PARAM = Pattern.compile("id=([^\"]*)");
+
+    private final Map<String, AtomicInteger> callsPerId = new ConcurrentHashMap<>();
+    private final Set<InetSocketAddress> clientConnections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private ExecutorService stubThreads;
+    private HttpServer stubConnector;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private EdcTransferService service;
+
+    @BeforeEach
+    void startStubConnector() throws IOException {
+        stubThreads = Executors.newCachedThreadPool();
+        stubConnector = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stubConnector.setExecutor(stubThreads);
+        stubConnector.createContext("/api/management", this::handle);
+        stubConnector.start();
+    }
+
+    @AfterEach
+    void stop() {
+        service.shutdown();
+        connectionManager.close();
+        stubConnector.stop(0);
+        stubThreads.shutdownNow();
+    }
+
+    @Test
+    void retriesFailedCallsAndReportsStatusPerId() {
+        service = newService(8, 4);
+
+        List<Map<String, Object>> results = service.initiateTransfersBulk(List.of("1", "flaky", "bad"), null, false)
+                .join();
+
+        assertEquals("initiated", results.get(0).get("status"));
+        assertEquals("initiated", results.get(1).get("status"));
+        assertEquals(2, callsPerId.get("flaky").get());
+        assertEquals("bad", results.get(2).get("id"));
+        assertEquals("failed", results.get(2).get("status"));
+        assertEquals(1, callsPerId.get("bad").get());
+    }
+
+    @Test
+    void doesNotRepeatCallsTheConnectorMayHaveActedOn() {
+        service = newService(8, 4);
+
+        List<Map<String, Object>> results = service.initiateTransfersBulk(List.of("broken", "slow"), null, false)
+                .join();
+
+        assertTrue(results.stream().allMatch(result -> "failed".equals(result.get("status"))));
+        assertEquals(1, callsPerId.get("broken").get());
+        assertEquals(1, callsPerId.get("slow").get());
+    }
+
+    @Test
+    void limitsAndReusesConnectionsPerHost() {
+        service = newService(8, 3);
+        List<String> ids = IntStream.range(0, 40).mapToObj(String::valueOf).toList();
+
+        List<Map<String, Object>> results = service.initiateTransfersBulk(ids, null, false).join();
+
+        assertTrue(results.stream().allMatch(result -> "initiated".equals(result.get("status"))));
+        assertTrue(maxInFlight.get() <= 3, "max in flight " + maxInFlight.get());
+        assertTrue(clientConnections.size() <= 3, "connections opened " + clientConnections.size());
+    }
+
+    private EdcTransferService newService(int bulkMaxInFlight, int maxConnectionsPerHost) {
+        EdcClientConfig clientConfig = new EdcClientConfig();
+        ReflectionTestUtils.setField(clientConfig, "maxConnections", 100);
+        ReflectionTestUtils.setField(clientConfig, "maxConnectionsPerHost", maxConnectionsPerHost);
+        ReflectionTestUtils.setField(clientConfig, "connectTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(clientConfig, "responseTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(clientConfig, "poolTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(clientConfig, "idleTimeoutMs", 30000L);
+        connectionManager = clientConfig.edcConnectionManager(new SimpleMeterRegistry());
+
+        EdcTransferProfileProperties.Profile profile = new EdcTransferProfileProperties.Profile();
+        profile.setConnectorUrl("http://127.0.0.1:" + stubConnector.getAddress().getPort());
+        profile.setApiKey("test");
+        profile.setContractAgreementId("agreement");
+        profile.setDataSinkUrl("http://localhost/sink");
+        EdcTransferProfileProperties profileProperties = new EdcTransferProfileProperties();
+        profileProperties.getProfiles().put("default", profile);
+        EdcTransferProfileRegistry profileRegistry = new EdcTransferProfileRegistry();
+        ReflectionTestUtils.setField(profileRegistry, "properties", profileProperties);
+        profileRegistry.init();
+
+        EdcTransferService service = new EdcTransferService();
+        ReflectionTestUtils.setField(service, "profileRegistry", profileRegistry);
+        ReflectionTestUtils.setField(service, "edcRestTemplate", clientConfig.edcRestTemplate(connectionManager));
+        ReflectionTestUtils.setField(service, "completionRegistry", new DataTransferCompletionRegistry());
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "maxConcurrency", 64);
+        ReflectionTestUtils.setField(service, "maxWaiting", 1000);
+        ReflectionTestUtils.setField(service, "maxRetries", 3);
+        ReflectionTestUtils.setField(service, "retryBackoffMs", 10L);
+        ReflectionTestUtils.setField(service, "retryMaxBackoffMs", 100L);
+        ReflectionTestUtils.setField(service, "bulkMaxInFlight", bulkMaxInFlight);
+        ReflectionTestUtils.setField(service, "bulkMaxSize", 1000);
+        service.init();
+        return service;
+    }
+
+    /**
+     * Stub connector: "bad" is always rejected, "broken" always fails with 500, "flaky" fails once with 503, "slow"
+     * answers after the client's response timeout, everything else is accepted
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        clientConnections.add(exchange.getRemoteAddress());
+        try {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            Matcher matcher = ID_PARAM.matcher(body);
+            String id = matcher.find() ? matcher.group(1) : "";
+            int calls = callsPerId.computeIfAbsent(id, key -> new AtomicInteger()).incrementAndGet();
+            Thread.sleep(id.equals("slow") ? 1500 : 20);
+
+            int status = switch (id) {
+                case "bad" -> 400;
+                case "broken" -> 500;
+                case "flaky" -> calls == 1 ? 503 : 200;
+                default -> 200;
+            };
+            byte[] response = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, response.length);
+            exchange.getResponseBody().write(response);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package utcluj.aut.demosimpleapp.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import utcluj.aut.demosimpleapp.util.KeyringKeyProvider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EncryptionBatchServiceTest {
+
+    @TempDir
+    Path keyringDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private EncryptionBatchService batchService;
+
+    @BeforeEach
+    void setUp() {
+        batchService = newBatchService(new EncryptionService(new KeyringKeyProvider(keyringDir, "test")),
+                objectMapper, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchService.shutdown();
+    }
+
+    @Test
+    void encryptsAndDecryptsInInputOrder() {
+        List<Map<String, Object>> encrypted = batchService.process(EncryptionBatchService.Operation.ENCRYPT,
+                List.of(Map.of("plainText", "a"), Map.of("plainText", "b"), Map.of("plainText", "c")));
+
+        List<Map<String, String>> encryptedTexts = encrypted.stream()
+                .map(result -> Map.of("encryptedText", (String) result.get("encrypted")))
+                .toList();
+        List<Map<String, Object>> decrypted = batchService.process(EncryptionBatchService.Operation.DECRYPT,
+                encryptedTexts);
+
+        assertEquals(List.of(0, 1, 2), encrypted.stream().map(result -> result.get("index")).toList());
+        assertEquals(List.of("a", "b", "c"), decrypted.stream().map(result -> result.get("decrypted")).toList());
+    }
+
+    @Test
+    void failingItemsGetAnErrorWithoutFailingTheBatch() {
+        String valid = (String) batchService.process(EncryptionBatchService.Operation.ENCRYPT,
+                List.of(Map.of("plainText", "ok"))).get(0).get("encrypted");
+
+        List<Map<String, Object>> results = batchService.process(EncryptionBatchService.Operation.DECRYPT,
+                Arrays.asList(Map.of("encryptedText", valid), Map.of("encryptedText", "not encrypted"), null));
+
+        assertEquals("ok", results.get(0).get("decrypted"));
+        assertTrue(results.get(1).containsKey("error"));
+        assertFalse(results.get(1).containsKey("decrypted"));
+        assertEquals("encryptedText cannot be empty", results.get(2).get("error"));
+    }
+
+    @Test
+    void rejectsBatchesOverTheLimit() {
+        List<Map<String, String>> items = List.of(Map.of("plainText", "1"), Map.of("plainText", "2"),
+                Map.of("plainText", "3"), Map.of("plainText", "4"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> batchService.process(EncryptionBatchService.Operation.ENCRYPT, items));
+    }
+
+    @Test
+    void streamsResultsForEveryLineInOrder() throws IOException {
+        String ndjson = "{\"plainText\": \"a\"}\n{broken\n\n{\"plainText\": \"b\"}\n{\"plainText\": \"c\"}\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        batchService.process(EncryptionBatchService.Operation.ENCRYPT,
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), out);
+
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            results.add(objectMapper.readTree(line));
+        }
+        assertEquals(4, results.size());
+        assertEquals(List.of(0, 1, 2, 3), results.stream().map(result -> result.get("index").asInt()).toList());
+        assertTrue(results.get(1).get("error").asText().startsWith("Invalid JSON"));
+        assertTrue(results.get(3).has("encrypted"));
+    }
+
+    private static EncryptionBatchService newBatchService(EncryptionService encryptionService,
+                                                          ObjectMapper objectMapper, int maxBatchSize) {
+        EncryptionBatchService service = new EncryptionBatchService();
+        ReflectionTestUtils.setField(service, "encryptionService", encryptionService);
+        ReflectionTestUtils.setField(service, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(service, "maxBatchSize", maxBatchSize);
+        // Fewer than the stream's items, so results are written while lines are still read
+        ReflectionTestUtils.setField(service, "maxInFlight", 2);
+        return service;
+    }
+}
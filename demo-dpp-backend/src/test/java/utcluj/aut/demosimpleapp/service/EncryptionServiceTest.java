@@ -0,0 +1,45 @@
+package utcluj.aut.demosimpleapp.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utcluj.aut.demosimpleapp.util.KeyProvider;
+import utcluj.aut.demosimpleapp.util.KeyringKeyProvider;
+
+import javax.crypto.Cipher;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EncryptionServiceTest {
+
+    @TempDir
+    Path keyringDir;
+
+    @Test
+    void decryptsValuesEncryptedWithRotatedKeys() {
+        EncryptionService before = new EncryptionService(new KeyringKeyProvider(keyringDir, "2024"));
+        String oldValue = before.encrypt("serial SN12345");
+
+        EncryptionService after = new EncryptionService(new KeyringKeyProvider(keyringDir, "2025"));
+        String newValue = after.encrypt("serial SN12345");
+
+        assertTrue(oldValue.startsWith("2024:"));
+        assertTrue(newValue.startsWith("2025:"));
+        assertEquals("serial SN12345", after.decrypt(oldValue));
+        assertEquals("serial SN12345", after.decrypt(newValue));
+    }
+
+    @Test
+    void decryptsLegacyEcbValuesWithDefaultKey() throws Exception {
+        KeyProvider keyProvider = new KeyringKeyProvider(keyringDir, KeyProvider.DEFAULT_KEY_ID);
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, keyProvider.getActiveKey());
+        String legacyValue = Base64.getEncoder().encodeToString(
+                cipher.doFinal("legacy".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("legacy", new EncryptionService(keyProvider).decrypt(legacyValue));
+    }
+}
@@ -0,0 +1,97 @@
+package utcluj.aut.demosimpleapp.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import utcluj.aut.demosimpleapp.model.DigitalProductPassport;
+import utcluj.aut.demosimpleapp.repository.DigitalProductPassportRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "passports.import.batch-size=2"
+})
+@Import(PassportImportService.class)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PassportImportServiceTest {
+
+    @Autowired
+    private PassportImportService importService;
+
+    @Autowired
+    private DigitalProductPassportRepository passportRepository;
+
+    @Test
+    void importsJsonInBatchesAndReportsRejectedRows() throws IOException {
+        DigitalProductPassport existing = new DigitalProductPassport();
+        existing.setSerialNumber("JSON-EXISTING");
+        passportRepository.save(existing);
+
+        Map<String, Object> report = importService.importPassports(content("""
+                [
+                  {"serialNumber": "JSON-1", "productName": "Battery", "id": 999,
+                   "repairHistory": [{"description": "Cell swap", "repairDate": "2024-03-01T10:00:00"}]},
+                  {"serialNumber": "JSON-EXISTING"},
+                  {"productName": "No serial"},
+                  {"serialNumber": "JSON-2", "manufacturingDate": "not a date"},
+                  {"serialNumber": "JSON-1"},
+                  {"serialNumber": "JSON-3"}
+                ]
+                """), PassportImportService.Format.JSON);
+
+        assertEquals(6, report.get("received"));
+        assertEquals(2, report.get("imported"));
+        assertEquals(2, report.get("duplicates"));
+        assertEquals(2, report.get("failed"));
+        assertFalse(report.containsKey("aborted"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> errors = (List<Map<String, Object>>) report.get("errors");
+        assertEquals(List.of(1, 2, 3, 4), errors.stream().map(error -> error.get("index")).sorted().toList());
+
+        DigitalProductPassport imported = passportRepository.findWithRepairHistoryBySerialNumber("JSON-1").orElseThrow();
+        assertEquals("Battery", imported.getProductName());
+        assertEquals(1, imported.getRepairHistory().size());
+        assertEquals(LocalDateTime.of(2024, 3, 1, 10, 0), imported.getRepairHistory().get(0).getRepairDate());
+        assertEquals(1, passportRepository.findExistingSerialNumbers(List.of("JSON-3", "JSON-2")).size());
+    }
+
+    @Test
+    void importsCsvWithQuotedFieldsAndKeepsRowsBeforeATruncatedRecord() throws IOException {
+        Map<String, Object> report = importService.importPassports(content("""
+                serialNumber,productName,manufacturingDate
+                CSV-1,"Pack, ""large""\",2024-01-15T08:30:00
+                CSV-2,"Two
+                lines",
+                CSV-3,"unterminated
+                """), PassportImportService.Format.CSV);
+
+        assertEquals(2, report.get("imported"));
+        assertEquals("Unterminated quoted field in CSV record [CSV-3]", report.get("aborted"));
+        DigitalProductPassport first = passportRepository.findWithRepairHistoryBySerialNumber("CSV-1").orElseThrow();
+        assertEquals("Pack, \"large\"", first.getProductName());
+        assertEquals(LocalDateTime.of(2024, 1, 15, 8, 30), first.getManufacturingDate());
+        assertEquals("Two\nlines",
+                passportRepository.findWithRepairHistoryBySerialNumber("CSV-2").orElseThrow().getProductName());
+    }
+
+    private static InputStream content(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,94 @@
+package utcluj.aut.demosimpleapp.service;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import utcluj.aut.demosimpleapp.config.SearchIndexInitializer;
+import utcluj.aut.demosimpleapp.model.DigitalProductPassport;
+import utcluj.aut.demosimpleapp.model.RepairEntry;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@Import({PassportSearchService.class, SearchIndexInitializer.class})
+class PassportSearchServiceTest {
+
+    @Autowired
+    private PassportSearchService searchService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 30; i++) {
+            DigitalProductPassport passport = new DigitalProductPassport();
+            passport.setProductName(i % 3 == 0 ? "Battery Pack " + i : "Motor " + i);
+            passport.setProductType(i % 3 == 0 ? "Battery" : "Motor");
+            passport.setManufacturer(i % 2 == 0 ? "ACME" : "Globex");
+            passport.setSerialNumber(String.format("SN-%04d", i));
+            passport.setModelNumber("M-20" + (10 + i % 5));
+            if (i == 7) {
+                RepairEntry repair = new RepairEntry();
+                repair.setRepairDate(LocalDateTime.of(2024, 5, 1, 9, 0));
+                repair.setDescription("Replaced worn bearing");
+                repair.setPassport(passport);
+                passport.getRepairHistory().add(repair);
+            }
+            entityManager.persist(passport);
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    void matchesPrefixesInPassportAndRepairTextWithFacets() {
+        Map<String, Object> batteries = searchService.search("acme batt", false, null, null, PageRequest.of(0, 20));
+        assertEquals(5L, batteries.get("total"));
+        assertEquals(List.of(Map.of("value", "ACME", "count", 5L)), facet(batteries, "manufacturer"));
+
+        Map<String, Object> bearing = searchService.search("BEAR", false, null, null, PageRequest.of(0, 20));
+        assertEquals(List.of("SN-0007"), serialNumbers(bearing));
+
+        // The manufacturer filter narrows the results and the product type facet, but not the manufacturer facet
+        Map<String, Object> filtered = searchService.search("m-2010", false, null, "Globex", PageRequest.of(0, 20));
+        assertEquals(List.of("SN-0005", "SN-0015", "SN-0025"), serialNumbers(filtered));
+        assertEquals(List.of(Map.of("value", "Motor", "count", 2L), Map.of("value", "Battery", "count", 1L)),
+                facet(filtered, "productType"));
+        assertEquals(List.of(Map.of("value", "ACME", "count", 3L), Map.of("value", "Globex", "count", 3L)),
+                facet(filtered, "manufacturer"));
+    }
+
+    @Test
+    void pagesInIdOrderWithTheTotal() {
+        Map<String, Object> firstPage = searchService.search(" ", false, "Motor", null, PageRequest.of(0, 8));
+        Map<String, Object> lastPage = searchService.search(null, false, "Motor", null, PageRequest.of(2, 8));
+
+        assertEquals(20L, firstPage.get("total"));
+        assertEquals("SN-0001", serialNumbers(firstPage).get(0));
+        assertEquals(20L, lastPage.get("total"));
+        assertEquals(List.of("SN-0025", "SN-0026", "SN-0028", "SN-0029"), serialNumbers(lastPage));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> serialNumbers(Map<String, Object> response) {
+        return ((List<Map<String, Object>>) response.get("results")).stream()
+                .map(result -> (String) result.get("serialNumber"))
+                .toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> facet(Map<String, Object> response, String name) {
+        return ((Map<String, List<Map<String, Object>>>) response.get("facets")).get(name);
+    }
+}
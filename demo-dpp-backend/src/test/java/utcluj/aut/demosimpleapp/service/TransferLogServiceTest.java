@@ -0,0 +1,147 @@
+package utcluj.aut.demosimpleapp.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransferLogServiceTest {
+
+    @TempDir
+    private Path logDir;
+
+    private TransferLogService log;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        log.shutdown();
+    }
+
+    @Test
+    void concurrentMessagesAreWrittenOnceAcrossSegmentsAndReadByTimeRange() throws InterruptedException, IOException {
+        log = start();
+        List<CompletableFuture<Void>> written = IntStream.range(0, 200).parallel()
+                .mapToObj(i -> log.append("message " + i + (i == 7 ? "\nsecond line \\n" : "")))
+                .collect(Collectors.toList());
+        written.forEach(CompletableFuture::join);
+        Instant between = log.tail(1).get(0).timestamp().plusMillis(1);
+        Thread.sleep(2);
+        log.append("later").join();
+
+        assertTrue(segmentCount() > 1);
+        List<TransferLogService.Entry> entries = readAll(null, null);
+        assertEquals(201, entries.size());
+        assertEquals(200, entries.stream().limit(200).map(TransferLogService.Entry::message).distinct().count());
+        assertTrue(entries.stream().anyMatch(entry -> entry.message().equals("message 7\nsecond line \\n")));
+        for (int i = 1; i < entries.size(); i++) {
+            assertFalse(entries.get(i).timestamp().isBefore(entries.get(i - 1).timestamp()));
+        }
+
+        assertEquals(List.of("later"),
+                readAll(between, null).stream().map(TransferLogService.Entry::message).toList());
+        assertEquals(200, readAll(null, between.minusMillis(1)).size());
+    }
+
+    @Test
+    void tailReadsTheLastEntriesAcrossSegmentsAndRestarts() throws InterruptedException, IOException {
+        log = start();
+        for (int i = 0; i < 30; i++) {
+            log.append("first run " + i).join();
+        }
+        log.shutdown();
+
+        log = start();
+        log.append("second run").join();
+
+        List<String> tail = log.tail(12).stream().map(TransferLogService.Entry::message).toList();
+        List<String> expected = new ArrayList<>();
+        for (int i = 19; i < 30; i++) {
+            expected.add("first run " + i);
+        }
+        expected.add("second run");
+        assertEquals(expected, tail);
+        assertEquals(31, log.tail(1000).size());
+    }
+
+    @Test
+    void everyAcceptedMessageIsWrittenWhenAppendsRaceShutdown() throws Exception {
+        log = start();
+        List<CompletableFuture<Void>> accepted = new CopyOnWriteArrayList<>();
+        ExecutorService appenders = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            appenders.execute(() -> {
+                for (int i = 0; ; i++) {
+                    try {
+                        accepted.add(log.append("message " + i));
+                    } catch (IllegalStateException e) {
+                        // A full queue is retried; the log refusing messages ends the appender
+                        if (e.getMessage().contains("not running")) {
+                            return;
+                        }
+                    }
+                }
+            });
+        }
+        Thread.sleep(50);
+        log.shutdown();
+        appenders.shutdown();
+        assertTrue(appenders.awaitTermination(5, TimeUnit.SECONDS));
+
+        CompletableFuture.allOf(accepted.toArray(CompletableFuture<?>[]::new)).get(5, TimeUnit.SECONDS);
+        assertThrows(IllegalStateException.class, () -> log.append("after shutdown"));
+        log = start();
+        assertEquals(accepted.size(), log.tail(accepted.size() + 1).size());
+    }
+
+    private TransferLogService start() throws IOException {
+        TransferLogService service = new TransferLogService();
+        ReflectionTestUtils.setField(service, "dir", logDir.toString());
+        ReflectionTestUtils.setField(service, "queueCapacity", 1000);
+        ReflectionTestUtils.setField(service, "segmentMaxBytes", 300L);
+        ReflectionTestUtils.setField(service, "segmentMaxAgeMs", 60_000L);
+        ReflectionTestUtils.setField(service, "fsync", "always");
+        ReflectionTestUtils.setField(service, "fsyncIntervalMs", 1000L);
+        service.start();
+        return service;
+    }
+
+    /**
+     * Read a time range in small pages, following the cursor
+     */
+    private List<TransferLogService.Entry> readAll(Instant from, Instant to) throws IOException {
+        List<TransferLogService.Entry> entries = new ArrayList<>();
+        String cursor = null;
+        do {
+            TransferLogService.Scan scan = log.read(from, to, cursor, 7);
+            entries.addAll(scan.entries());
+            cursor = scan.nextCursor();
+        } while (cursor != null);
+        return entries;
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(logDir)) {
+            return files.count();
+        }
+    }
+}
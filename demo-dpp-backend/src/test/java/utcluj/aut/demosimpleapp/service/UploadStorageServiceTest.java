@@ -0,0 +1,170 @@
+package utcluj.aut.demosimpleapp.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import utcluj.aut.demosimpleapp.repository.StoredBlobRepository;
+import utcluj.aut.demosimpleapp.util.BlobStore;
+import utcluj.aut.demosimpleapp.util.LocalBlobStore;
+import utcluj.aut.demosimpleapp.util.StoredContentFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@Import({UploadStorageService.class, UploadStorageServiceTest.Config.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UploadStorageServiceTest {
+
+    @TempDir
+    static Path uploadsDir;
+
+    @Autowired
+    private UploadStorageService uploadStorageService;
+
+    @Autowired
+    private StoredBlobRepository blobRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockitoBean
+    private EncryptionService encryptionService;
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        BlobStore blobStore() throws IOException {
+            return new LocalBlobStore(uploadsDir) {
+                @Override
+                public void put(String key, Path file) throws IOException {
+                    puts.add(TransactionSynchronizationManager.isActualTransactionActive());
+                    super.put(key, file);
+                    if (deleteAfterPut.getAndSet(false)) {
+                        // As if an unreferenced blob with the same content was deleted concurrently
+                        delete(key);
+                    }
+                }
+            };
+        }
+    }
+
+    // Whether a transaction was active during each put
+    private static final List<Boolean> puts = new CopyOnWriteArrayList<>();
+    private static final AtomicBoolean deleteAfterPut = new AtomicBoolean();
+
+    @Test
+    void contentIsUploadedOnceAndOutsideTransactions() throws IOException {
+        puts.clear();
+        UploadStorageService.StoredContent first = uploadStorageService.store(content("p,q\n7,8\n"), false);
+        UploadStorageService.StoredContent second = uploadStorageService.store(content("p,q\n7,8\n"), false);
+
+        assertEquals(List.of(false), puts);
+        assertTrue(second.deduplicated());
+        assertEquals(first.storedSize(), blobStore.size(first.key()));
+    }
+
+    @Test
+    void uploadWhoseObjectIsDeletedBeforeItIsReferencedFails() throws NoSuchAlgorithmException {
+        deleteAfterPut.set(true);
+
+        assertThrows(IOException.class, () -> uploadStorageService.store(content("r,s\n9,0\n"), false));
+
+        String key = UploadStorageService.keyFor(sha256("r,s\n9,0\n"), StoredContentFormat.Codec.GZIP, false);
+        assertFalse(blobRepository.existsById(key));
+    }
+
+    @Test
+    void identicalContentIsStoredOnceUnderItsShardedHash() throws IOException {
+        UploadStorageService.StoredContent first = uploadStorageService.store(content("a,b\n1,2\n"), false);
+        UploadStorageService.StoredContent second = uploadStorageService.store(content("a,b\n1,2\n"), false);
+        UploadStorageService.StoredContent other = uploadStorageService.store(content("a,b\n3,4\n"), false);
+
+        String sha256 = first.sha256();
+        assertEquals(sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256 + ".gz", first.key());
+        assertEquals(first.key(), second.key());
+        assertFalse(first.deduplicated());
+        assertTrue(second.deduplicated());
+        assertNotEquals(first.key(), other.key());
+        assertEquals(2, blobRepository.findById(first.key()).orElseThrow().getRefCount());
+        try (var staged = Files.list(uploadsDir.resolve(".staging"))) {
+            assertEquals(0, staged.count());
+        }
+    }
+
+    @Test
+    void contentIsCompressedBehindAHeader() throws IOException {
+        String csv = "timestamp,temperature\n".repeat(1000);
+        UploadStorageService.StoredContent stored = uploadStorageService.store(content(csv), false);
+
+        assertTrue(stored.storedSize() < csv.length() / 10, "stored " + stored.storedSize());
+        try (InputStream in = blobStore.open(stored.key(), 0, -1)) {
+            StoredContentFormat.Header header = StoredContentFormat.readHeader(in);
+            assertEquals(StoredContentFormat.Codec.GZIP, header.codec());
+            assertFalse(header.encrypted());
+            assertEquals(csv.length(), header.contentLength());
+            assertArrayEquals(csv.getBytes(StandardCharsets.UTF_8), header.codec().decompress(in).readAllBytes());
+        }
+    }
+
+    @Test
+    void blobIsDeletedWithItsLastReference() throws IOException {
+        String key = uploadStorageService.store(content("x,y\n5,6\n"), false).key();
+        uploadStorageService.store(content("x,y\n5,6\n"), false);
+
+        transactionTemplate.executeWithoutResult(status -> uploadStorageService.release(key));
+        uploadStorageService.deleteIfUnreferenced(key);
+
+        assertEquals(1, blobRepository.findById(key).orElseThrow().getRefCount());
+        assertTrue(blobStore.size(key) > 0);
+
+        transactionTemplate.executeWithoutResult(status -> uploadStorageService.release(key));
+        uploadStorageService.deleteIfUnreferenced(key);
+
+        assertFalse(blobRepository.existsById(key));
+        assertEquals(-1, blobStore.size(key));
+        assertFalse(Files.exists(uploadsDir.resolve(key).getParent()));
+    }
+
+    private static InputStream content(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(String csv) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+}
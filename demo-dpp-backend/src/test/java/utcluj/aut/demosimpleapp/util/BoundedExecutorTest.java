@@ -0,0 +1,69 @@
+package utcluj.aut.demosimpleapp.util;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedExecutorTest {
+
+    @ParameterizedTest(name = "virtual threads: {0}")
+    @ValueSource(booleans = {false, true})
+    void rejectsWhenSaturatedAndFreesSlotsOfFailedTasks(boolean virtualThreads) throws InterruptedException {
+        try (BoundedExecutor executor = new BoundedExecutor("test", virtualThreads, 2, 1)) {
+            fillAndReject(executor);
+            assertEquals(1, executor.getRejectedCount());
+
+            for (int i = 0; i < 3; i++) {
+                executor.execute(() -> {
+                    throw new IllegalStateException("Task failed");
+                });
+            }
+            await(() -> executor.getCompletedCount() == 6);
+            assertEquals(0, executor.getActiveCount());
+            assertEquals(0, executor.getWaitingCount());
+
+            // The failed tasks gave their slots back, so the executor takes as many tasks as at the start
+            fillAndReject(executor);
+            assertEquals(2, executor.getRejectedCount());
+        }
+    }
+
+    /**
+     * Occupy both running slots and the waiting slot, check a further task is rejected, then let them finish
+     */
+    private static void fillAndReject(BoundedExecutor executor) throws InterruptedException {
+        long completed = executor.getCompletedCount();
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 3; i++) {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        await(() -> executor.getActiveCount() == 2 && executor.getWaitingCount() == 1);
+
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> { }));
+
+        release.countDown();
+        await(() -> executor.getCompletedCount() == completed + 3);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+    }
+}
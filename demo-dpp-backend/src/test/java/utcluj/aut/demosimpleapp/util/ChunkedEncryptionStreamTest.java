@@ -0,0 +1,111 @@
+package utcluj.aut.demosimpleapp.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChunkedEncryptionStreamTest {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private static final String KEY_ID = "test";
+
+    private final SecretKey key = new SecretKeySpec(new byte[16], "AES");
+
+    private final KeyProvider keyProvider = new KeyProvider() {
+        @Override
+        public String getActiveKeyId() {
+            return KEY_ID;
+        }
+
+        @Override
+        public SecretKey getKey(String keyId) {
+            if (!KEY_ID.equals(keyId)) {
+                throw new IllegalArgumentException("Unknown encryption key: " + keyId);
+            }
+            return key;
+        }
+    };
+
+    @Test
+    void roundTripsDataOfAnyLength() throws IOException {
+        for (int length : new int[]{0, 1, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1, 3 * CHUNK_SIZE, 10_000}) {
+            byte[] plaintext = randomBytes(length);
+            byte[] encrypted = encrypt(plaintext);
+
+            assertArrayEquals(plaintext, decrypt(encrypted), "length " + length);
+            assertEquals(length, ChunkedEncryptionFormat.plaintextLength(encrypted.length, headerLength(encrypted), CHUNK_SIZE), "length " + length);
+        }
+    }
+
+    @Test
+    void readsFromArbitraryOffset(@TempDir Path dir) throws IOException {
+        byte[] plaintext = randomBytes(5 * CHUNK_SIZE + 17);
+        Path file = dir.resolve("data.enc");
+        Files.write(file, encrypt(plaintext));
+
+        assertEquals(plaintext.length, ChunkedEncryptionFormat.plaintextLength(file));
+        for (int offset : new int[]{0, 1, CHUNK_SIZE, 2 * CHUNK_SIZE + 5, plaintext.length - 1}) {
+            try (InputStream in = ChunkedDecryptionInputStream.open(file, keyProvider, offset)) {
+                assertArrayEquals(Arrays.copyOfRange(plaintext, offset, plaintext.length), in.readAllBytes(),
+                        "offset " + offset);
+            }
+        }
+    }
+
+    @Test
+    void rejectsTamperedChunk() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(3 * CHUNK_SIZE));
+        encrypted[headerLength(encrypted) + ChunkedEncryptionFormat.FRAME_HEADER_LENGTH + 5] ^= 1;
+
+        assertThrows(IOException.class, () -> decrypt(encrypted));
+    }
+
+    @Test
+    void rejectsTruncatedFile() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(3 * CHUNK_SIZE));
+        int oneFrame = CHUNK_SIZE + ChunkedEncryptionFormat.FRAME_OVERHEAD;
+        byte[] truncated = Arrays.copyOf(encrypted, headerLength(encrypted) + 2 * oneFrame);
+
+        assertThrows(IOException.class, () -> decrypt(truncated));
+    }
+
+    private byte[] encrypt(byte[] plaintext) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new ChunkedEncryptionOutputStream(bytes, KEY_ID, key, CHUNK_SIZE)) {
+            out.write(plaintext);
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] decrypt(byte[] encrypted) throws IOException {
+        try (InputStream in = new ChunkedDecryptionInputStream(new ByteArrayInputStream(encrypted), keyProvider)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static int headerLength(byte[] encrypted) throws IOException {
+        return ChunkedEncryptionFormat.readHeader(new ByteArrayInputStream(encrypted)).length();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,230 @@
+package utcluj.aut.demosimpleapp.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the S3 blob store against a minimal in-memory stand-in for an S3-compatible server
+ * (path-style PUT, GET with Range, HEAD and DELETE)
+ */
+class S3BlobStoreTest {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+
+    private HttpServer stubServer;
+    private S3BlobStore store;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void start() throws IOException {
+        stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stubServer.createContext("/", this::handle);
+        stubServer.start();
+        S3Client client = S3Client.builder()
+                .endpointOverride(URI.create("http://127.0.0.1:" + stubServer.getAddress().getPort()))
+                .region(Region.US_EAST_1)
+                .forcePathStyle(true)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("test", "test")))
+                .build();
+        store = new S3BlobStore(client, "uploads", "csv/");
+    }
+
+    @AfterEach
+    void stop() {
+        store.close();
+        stubServer.stop(0);
+    }
+
+    @Test
+    void storesReadsRangesAndDeletesBlobs() throws IOException {
+        byte[] content = randomBytes(10_000);
+        Path file = Files.write(tempDir.resolve("upload.tmp"), content);
+
+        store.put("ab/cd/abcd", file);
+
+        assertFalse(Files.exists(file));
+        assertTrue(objects.containsKey("/uploads/csv/ab/cd/abcd"));
+        assertEquals(content.length, store.size("ab/cd/abcd"));
+        try (InputStream in = store.open("ab/cd/abcd", 100, 50)) {
+            assertArrayEquals(Arrays.copyOfRange(content, 100, 150), in.readAllBytes());
+        }
+        try (InputStream in = store.open("ab/cd/abcd", 9_000, -1)) {
+            assertArrayEquals(Arrays.copyOfRange(content, 9_000, content.length), in.readAllBytes());
+        }
+
+        store.delete("ab/cd/abcd");
+
+        assertEquals(-1, store.size("ab/cd/abcd"));
+        assertThrows(FileNotFoundException.class, () -> store.open("ab/cd/abcd", 0, -1));
+    }
+
+    @Test
+    void decryptsFromAnOffsetWithRangedReads() throws IOException {
+        int chunkSize = 1024;
+        KeyProvider keyProvider = new TestKeyProvider();
+        byte[] content = randomBytes(20 * chunkSize + 7);
+        Path file = tempDir.resolve("upload.enc");
+        try (OutputStream out = new ChunkedEncryptionOutputStream(Files.newOutputStream(file),
+                KeyProvider.DEFAULT_KEY_ID, keyProvider.getActiveKey(), chunkSize)) {
+            out.write(content);
+        }
+        store.put("enc", file);
+
+        long offset = 15L * chunkSize + 3;
+        try (InputStream in = ChunkedDecryptionInputStream.open(
+                (start, length) -> store.open("enc", start, length), keyProvider, offset)) {
+            assertArrayEquals(Arrays.copyOfRange(content, (int) offset, content.length), in.readAllBytes());
+        }
+        // The header, then only the frames from the one containing the offset
+        long headerLength = ChunkedEncryptionFormat.FIXED_HEADER_LENGTH + 1 + KeyProvider.DEFAULT_KEY_ID.length();
+        long frameStart = headerLength + 15L * (chunkSize + ChunkedEncryptionFormat.FRAME_OVERHEAD);
+        assertEquals(List.of("bytes=0-" + (ChunkedEncryptionFormat.MAX_HEADER_LENGTH - 1), "bytes=" + frameStart + "-"),
+                ranges);
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        try (exchange) {
+            switch (exchange.getRequestMethod()) {
+                case "PUT" -> {
+                    byte[] body = exchange.getRequestBody().readAllBytes();
+                    String contentSha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+                    objects.put(path, contentSha256 != null && contentSha256.startsWith("STREAMING-")
+                            ? decodeAwsChunked(body) : body);
+                    exchange.sendResponseHeaders(200, -1);
+                }
+                case "HEAD" -> {
+                    byte[] object = objects.get(path);
+                    if (object == null) {
+                        exchange.sendResponseHeaders(404, -1);
+                    } else {
+                        exchange.getResponseHeaders().set("Content-Length", String.valueOf(object.length));
+                        exchange.sendResponseHeaders(200, -1);
+                    }
+                }
+                case "GET" -> {
+                    byte[] object = objects.get(path);
+                    if (object == null) {
+                        byte[] error = "<Error><Code>NoSuchKey</Code></Error>".getBytes();
+                        exchange.sendResponseHeaders(404, error.length);
+                        exchange.getResponseBody().write(error);
+                        return;
+                    }
+                    String range = exchange.getRequestHeaders().getFirst("Range");
+                    int start = 0;
+                    int end = object.length;
+                    if (range != null) {
+                        ranges.add(range);
+                        Matcher matcher = RANGE.matcher(range);
+                        if (!matcher.matches()) {
+                            throw new IllegalArgumentException(range);
+                        }
+                        start = Integer.parseInt(matcher.group(1));
+                        if (!matcher.group(2).isEmpty()) {
+                            end = Math.min(end, Integer.parseInt(matcher.group(2)) + 1);
+                        }
+                    }
+                    exchange.sendResponseHeaders(range != null ? 206 : 200, end - start);
+                    exchange.getResponseBody().write(object, start, end - start);
+                }
+                case "DELETE" -> {
+                    objects.remove(path);
+                    exchange.sendResponseHeaders(204, -1);
+                }
+                default -> exchange.sendResponseHeaders(405, -1);
+            }
+        }
+    }
+
+    /**
+     * Strip the aws-chunked framing (hex size;chunk-signature=...\r\n data \r\n) the SDK uses for signed
+     * uploads over plain HTTP
+     */
+    private static byte[] decodeAwsChunked(byte[] body) {
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        int position = 0;
+        while (true) {
+            int lineEnd = indexOfCrLf(body, position);
+            String line = new String(body, position, lineEnd - position, StandardCharsets.US_ASCII);
+            int size = Integer.parseInt(line.substring(0, line.indexOf(';')), 16);
+            if (size == 0) {
+                return decoded.toByteArray();
+            }
+            decoded.write(body, lineEnd + 2, size);
+            position = lineEnd + 2 + size + 2;
+        }
+    }
+
+    private static int indexOfCrLf(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length - 1; i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Malformed aws-chunked body");
+    }
+
+    /**
+     * Single all-zero key
+     */
+    private static final class TestKeyProvider implements KeyProvider {
+
+        private final SecretKey key = new SecretKeySpec(new byte[16], "AES");
+
+        @Override
+        public String getActiveKeyId() {
+            return DEFAULT_KEY_ID;
+        }
+
+        @Override
+        public SecretKey getKey(String keyId) {
+            return key;
+        }
+    }
+}
@@ -47,7 +47,9 @@ const CustomerDashboard = () => {
     }
   };
 
-  // Function to initiate EDC transfer of product passport
+  // Function to initiate EDC transfer of product passport.
+  // Subscribes to pushed data transfers for the ID first, so the data is shown as soon as it arrives;
+  // falls back to polling if the subscription cannot be opened.
   const initiateEdcTransfer = async () => {
     if (!productId.trim()) {
       setEdcTransferError("Please enter a product ID");
@@ -58,7 +60,63 @@ const CustomerDashboard = () => {
     setEdcTransferError(null);
     setEdcTransferStatus('initiated');
     setEdcPollCount(0); // Reset count for UI display
-    
+
+    const events = new EventSource(
+      `${DATA_TRANSFER_API_URL}/subscribe?referenceId=${encodeURIComponent(productId)}`);
+    let initiated = false;
+    let finished = false;
+    const timeout = setTimeout(() => {
+      finish();
+      setEdcTransferError("Data transfer timed out. Please try again.");
+      setEdcTransferStatus('failed');
+    }, 30000);
+
+    const finish = () => {
+      finished = true;
+      clearTimeout(timeout);
+      events.close();
+      setIsEdcTransferLoading(false);
+    };
+
+    events.addEventListener('data-transfer', (event) => {
+      if (finished) return;
+      const transfer = JSON.parse(event.data);
+      finish();
+      setPassport(JSON.parse(transfer.jsonData));
+      setSearchPerformed(true);
+      setEdcTransferStatus('complete');
+    });
+
+    events.onopen = async () => {
+      // onopen also fires on automatic reconnects; initiate only once
+      if (initiated) return;
+      initiated = true;
+      try {
+        const response = await fetch(`${EDC_API_URL}/initiate-async/${productId}`, {
+          method: 'POST'
+        });
+        if (!response.ok) {
+          throw new Error("Failed to initiate EDC transfer");
+        }
+        if (!finished) setEdcTransferStatus('checking');
+      } catch (err) {
+        finish();
+        setEdcTransferError(err.message);
+        setEdcTransferStatus('failed');
+      }
+    };
+
+    events.onerror = () => {
+      if (initiated || finished) return; // EventSource reconnects by itself once the stream was open
+      finished = true;
+      clearTimeout(timeout);
+      events.close();
+      initiateEdcTransferWithPolling();
+    };
+  };
+
+  // Fallback: initiate the transfer and poll for the results
+  const initiateEdcTransferWithPolling = async () => {
     try {
       const response = await fetch(`${EDC_API_URL}/initiate-async/${productId}`, {
         method: 'POST'
@@ -263,7 +321,7 @@ const CustomerDashboard = () => {
                     {edcTransferStatus === 'initiated' ? 'Initiating EDC Transfer...' : 'Retrieving data from EDC system...'}
                   </p>
                 </div>
-                {edcTransferStatus === 'checking' && (
+                {edcTransferStatus === 'checking' && edcPollCount > 0 && (
                   // Use edcPollCount directly from state for display
                   <p className="mt-2 text-sm">This may take a few seconds. Attempt {edcPollCount}/10</p> 
                 )}